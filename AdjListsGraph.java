@@ -1,16 +1,23 @@
 import java.util.Vector;
 import java.util.LinkedList;
-import java.util.Iterator;
-import javafoundations.ArrayStack;
+import java.util.Hashtable;
 import java.util.Arrays;
-import java.io.PrintWriter;
-import java.io.File;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.io.IOException;
 
 /**
- * AdjListsGraph implements the Graph interface. It contains a Vector that stores vertices and a Vector of LinkedLists that 
- * each store vertices to create arcs. It also adds/removes graph components, finds the predecessors/successors 
+ * AdjListsGraph implements the Graph interface. It contains a Vector that stores vertices, a Hashtable that
+ * maps each vertex to its dense int ID (its position in the Vector), and a Vector of IntLists that each store
+ * the IDs of the vertices an arc leads to. It also adds/removes graph components, finds the predecessors/successors 
  * of a vertex, performs depth-first and breadth-first searches, and writes out the graph components to a TGF file. 
+ * Every change bumps a modification count, and results of whole-graph analyses such as freeze() are cached in an
+ * AnalysisCache until the next change.
  *
  * AdjListsGraph.java
  * @author Alexandra Bullen-Smith
@@ -22,14 +29,66 @@ public class AdjListsGraph<T> implements Graph<T> {
 
     // instance variables
     private Vector<T> vertices;
-    private Vector<LinkedList<T>> arcs;
+    private Hashtable<T,Integer> vertexIds;
+    private Vector<IntList> arcs;
+    private Vector<IntList> inArcs;  // IDs of the vertices each arc comes from, or null if not tracked
+    private int numArcs;
+    private long modCount;  // number of changes so far
+    private AnalysisCache cache;
+    private Scratch spare;  // arrays of the last finished traversal, reused by the next one
 
     /**
      * Constructor creates a AdjListsGraph object and initializes instance variables.
      */
     public AdjListsGraph(){
         this.vertices = new Vector<T>();
-        this.arcs = new Vector<LinkedList<T>>();
+        this.vertexIds = new Hashtable<T,Integer>();
+        this.arcs = new Vector<IntList>();
+        this.numArcs = 0;
+        this.modCount = 0;
+        this.cache = new AnalysisCache(8);
+    }
+
+    /**
+     * Constructor creates a AdjListsGraph object that can also keep an index of the arcs entering each vertex.
+     * With the index, getPredecessors() and isUndirected() run in time proportional to the degrees involved.
+     *
+     * @param boolean true if the predecessor index should be maintained
+     */
+    public AdjListsGraph(boolean trackPredecessors){
+        this();
+        if (trackPredecessors) {
+            this.enablePredecessorIndex();
+        }
+    }
+
+    /**
+     * Builds the predecessor index from the current arcs and keeps it up to date from now on.
+     * If the index already exists, the graph does not change.
+     */
+    public void enablePredecessorIndex() {
+        if (this.inArcs != null) {
+            return;
+        }
+        this.inArcs = new Vector<IntList>();
+        for (int i = 0; i < this.arcs.size(); i++) {
+            this.inArcs.add(new IntList());
+        }
+        for (int i = 0; i < this.arcs.size(); i++) {
+            IntList list = this.arcs.get(i);
+            for (int j = 0; j < list.size(); j++) {
+                this.inArcs.get(list.get(j)).add(i);
+            }
+        }
+    }
+
+    /**
+     * Returns a boolean indicating whether the predecessor index is being maintained.
+     *
+     * @return boolean true if the index exists, false otherwise
+     */
+    public boolean hasPredecessorIndex() {
+        return this.inArcs != null;
     }
 
     /** 
@@ -56,11 +115,60 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @return int total number of arcs
      */
     public int getNumArcs() {
-        int numArcs = 0;
-        for (int i = 0; i < this.arcs.size(); i++) {
-            numArcs += this.arcs.elementAt(i).size();
-        }
-        return numArcs;
+        return this.numArcs;
+    }
+
+    /**
+     * Getter method for obtaining the modification count of this graph. It grows with every vertex or arc
+     * added or removed, so results computed at one count are still valid while the count is unchanged.
+     *
+     * @return long number of changes made to this graph
+     */
+    public long getModCount() {
+        return this.modCount;
+    }
+
+    /**
+     * Getter method for obtaining the cache of analysis results of this graph, keyed by getModCount().
+     *
+     * @return AnalysisCache of this graph
+     */
+    public AnalysisCache getAnalysisCache() {
+        return this.cache;
+    }
+
+    /**
+     * Returns the dense int ID of the given vertex in constant time. IDs run from 0 to
+     * getNumVertices() - 1 and match the position of the vertex in getAllVertices().
+     *
+     * @param T given vertex
+     * @return int ID of the vertex, or -1 if the vertex is not in this graph
+     */
+    public int getVertexId(T vertex) {
+        PipelineMetrics.add(PipelineMetrics.Counter.VERTEX_LOOKUPS, 1);
+        Integer id = this.vertexIds.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the vertex with the given dense int ID.
+     *
+     * @param int ID of the vertex
+     * @return T vertex stored under that ID
+     */
+    public T getVertex(int id) {
+        return this.vertices.get(id);
+    }
+
+    /**
+     * Returns the number of arcs leaving the given vertex without building a list of its successors.
+     *
+     * @param T given vertex
+     * @return int out-degree of the vertex, or 0 if the vertex is not in this graph
+     */
+    public int getOutDegree(T vertex) {
+        int id = this.getVertexId(vertex);
+        return id < 0 ? 0 : this.arcs.get(id).size();
     }
 
     /** 
@@ -69,8 +177,16 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @return LinkedList containing all the successors of the given vertex.
      */
     public LinkedList<T> getSuccessors(T vertex) {
-        int i = this.vertices.indexOf(vertex);
-        return this.arcs.get(i);
+        LinkedList<T> newList = new LinkedList<T>();
+        int id = this.getVertexId(vertex);
+        if (id < 0) {
+            return newList;
+        }
+        IntList successors = this.arcs.get(id);
+        for (int i = 0; i < successors.size(); i++) {
+            newList.add(this.vertices.get(successors.get(i)));
+        }
+        return newList;
     }
 
     /** 
@@ -81,10 +197,24 @@ public class AdjListsGraph<T> implements Graph<T> {
      */
     public LinkedList<T> getPredecessors(T vertex) {
         LinkedList<T> newList = new LinkedList<T>();
+        int id = this.getVertexId(vertex);
+        if (id < 0) {
+            return newList;
+        }
+
+        if (this.inArcs != null) {
+            int[] ids = this.inArcs.get(id).toArray();
+            Arrays.sort(ids);  // same order as a scan over all vertices, with repeated arcs listed once
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) {
+                    newList.add(this.vertices.get(ids[i]));
+                }
+            }
+            return newList;
+        }
 
-        for (int i = 0; i < this.vertices.size(); i++) {
-            LinkedList<T> sucessorList = this.getSuccessors(this.vertices.get(i));
-            if (sucessorList.contains(vertex)) {
+        for (int i = 0; i < this.arcs.size(); i++) {
+            if (this.arcs.get(i).contains(id)) {
                 newList.add(this.vertices.get(i));
             }            
         }
@@ -109,8 +239,9 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @return boolean true if an arc exists from the first vertex to the second, false otherwise
      */
     public boolean isArc (T vertex1, T vertex2) {
-        int index = vertices.indexOf(vertex1);
-        return this.arcs.elementAt(index).contains(vertex2);
+        int id1 = this.getVertexId(vertex1);
+        int id2 = this.getVertexId(vertex2);
+        return id1 >= 0 && id2 >= 0 && this.arcs.get(id1).contains(id2);
     }
 
     /** 
@@ -126,17 +257,40 @@ public class AdjListsGraph<T> implements Graph<T> {
 
     /** 
      * Returns a boolean indicating whether a pair of nodes i,j for which there is an arc, the opposite arc
-     * is also present in the graph. 
+     * is also present in the graph. The answer is cached until the graph changes.
      * 
      * @return boolean true if the graph is undirected, false otherwise
      */
     public boolean isUndirected() {
+        return this.cache.get("isUndirected", this.modCount, this::checkUndirected);
+    }
+
+    /**
+     * Checks every arc for the opposite arc.
+     */
+    private boolean checkUndirected() {
+        if (this.inArcs != null) {
+            int[] stamp = new int[this.arcs.size()];  // stamp[j] == i + 1 when there is an arc from j into i
+            for (int i = 0; i < this.arcs.size(); i++) {
+                IntList in = this.inArcs.get(i);
+                for (int j = 0; j < in.size(); j++) {
+                    stamp[in.get(j)] = i + 1;
+                }
+                IntList out = this.arcs.get(i);
+                for (int j = 0; j < out.size(); j++) {
+                    if (stamp[out.get(j)] != i + 1) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
         for (int i = 0; i < this.arcs.size(); i++) {
-            LinkedList<T> currentArc = this.arcs.elementAt(i); // get the arc in this graph's arcs
+            IntList currentArcs = this.arcs.get(i); // get the arcs leaving vertex i
 
-            for(int j = 0; j < currentArc.size(); j++) {
-                int currentVertex = this.vertices.indexOf(currentArc.get(j));
-                if (!isEdge(this.vertices.get(i), this.vertices.get(currentVertex))){
+            for (int j = 0; j < currentArcs.size(); j++) {
+                if (!this.arcs.get(currentArcs.get(j)).contains(i)) {
                     return false;
                 }
             }
@@ -152,28 +306,73 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @param T vertex to be added
      */
     public void addVertex (T vertex) {
-        if (!this.vertices.contains(vertex)){
+        if (!this.vertexIds.containsKey(vertex)){
+            this.vertexIds.put(vertex, this.vertices.size());
             this.vertices.add(vertex);
-            this.arcs.add(new LinkedList<T>());
+            this.arcs.add(new IntList());
+            if (this.inArcs != null) {
+                this.inArcs.add(new IntList());
+            }
+            this.modCount++;
         }
     }
 
     /** 
      * Removes the given vertex from this graph.
      * If the given vertex does not exist, the graph does not change.
+     * Every vertex after the removed one moves down by one ID, so the order of getAllVertices() is kept.
      * 
      * @param T vertex to be removed 
      */
     public void removeVertex (T vertex) {
-        if (this.vertices.contains(vertex)) {
-            int index = this.vertices.indexOf(vertex);
-            this.vertices.remove(vertex);
-            this.arcs.remove(this.arcs.elementAt(index));
+        int index = this.getVertexId(vertex);
+        if (index < 0) {
+            return;
+        }
 
-            for (int i = 0; i < this.arcs.size(); i++) {
-                this.arcs.get(i).remove(vertex);
+        this.numArcs -= this.arcs.get(index).size();
+        this.vertices.remove(index);
+        this.arcs.remove(index);
+        this.vertexIds.remove(vertex);
+
+        for (int i = index; i < this.vertices.size(); i++) {  // shift the IDs of the later vertices
+            this.vertexIds.put(this.vertices.get(i), i);
+        }
+
+        this.numArcs -= removeAndShift(this.arcs, index);
+        if (this.inArcs != null) {
+            this.inArcs.remove(index);
+            removeAndShift(this.inArcs, index);
+        }
+        this.modCount++;
+    }
+
+    /**
+     * Drops every entry of the removed vertex ID from the given lists and moves later IDs down by one.
+     *
+     * @param Vector<IntList> adjacency lists to be fixed
+     * @param int ID of the removed vertex
+     * @return int number of entries dropped
+     */
+    private static int removeAndShift(Vector<IntList> lists, int index) {
+        int dropped = 0;
+        for (int i = 0; i < lists.size(); i++) {
+            IntList list = lists.get(i);
+            int j = 0;
+            while (j < list.size()) {
+                int target = list.get(j);
+                if (target == index) {  // drop arcs touching the removed vertex
+                    list.removeAt(j);
+                    dropped++;
+                } else {
+                    if (target > index) {
+                        list.set(j, target - 1);
+                    }
+                    j++;
+                }
             }
         }
+        return dropped;
     }
 
     /** 
@@ -184,9 +383,16 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @param T end vertex of the arc
      */
     public void addArc (T vertex1, T vertex2) {
-        if (this.vertices.contains(vertex1) && this.vertices.contains(vertex2)){
-            int index = this.vertices.indexOf(vertex1);
-            this.arcs.elementAt(index).add(vertex2);
+        int id1 = this.getVertexId(vertex1);
+        int id2 = this.getVertexId(vertex2);
+        if (id1 >= 0 && id2 >= 0){
+            this.arcs.get(id1).add(id2);
+            if (this.inArcs != null) {
+                this.inArcs.get(id2).add(id1);
+            }
+            this.numArcs++;
+            this.modCount++;
+            PipelineMetrics.add(PipelineMetrics.Counter.EDGES_ADDED, 1);
         }
     }
 
@@ -198,41 +404,64 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @param T end vertex of the arc
      */
     public void removeArc (T vertex1, T vertex2) {
-        if (this.vertices.contains(vertex1) && this.vertices.contains(vertex2)){
-            int index = this.vertices.indexOf(vertex1);
-            this.arcs.elementAt(index).remove(vertex2);
+        int id1 = this.getVertexId(vertex1);
+        int id2 = this.getVertexId(vertex2);
+        if (id1 >= 0 && id2 >= 0 && this.arcs.get(id1).removeValue(id2)){
+            if (this.inArcs != null) {
+                this.inArcs.get(id2).removeValue(id1);
+            }
+            this.numArcs--;
+            this.modCount++;
         }
     }
 
     /** 
      * Inserts an edge between the two given vertices of this graph.
-     * If both vertices exist, the graph is not changed.
+     * If at least one of the vertices does not exist, the graph is not changed.
      * 
      * @param T start vertex of the arc
      * @param T end vertex of the arc
      */
     public void addEdge (T vertex1, T vertex2) {
-        if (this.vertices.contains(vertex1) && this.vertices.contains(vertex2)) {
-            int index1 = this.vertices.indexOf(vertex1);
-            this.arcs.elementAt(index1).add(vertex2);
-            int index2 = this.vertices.indexOf(vertex2);
-            this.arcs.elementAt(index2).addFirst(vertex1);
+        int id1 = this.getVertexId(vertex1);
+        int id2 = this.getVertexId(vertex2);
+        if (id1 >= 0 && id2 >= 0) {
+            this.arcs.get(id1).add(id2);
+            this.arcs.get(id2).add(id1);
+            if (this.inArcs != null) {
+                this.inArcs.get(id2).add(id1);
+                this.inArcs.get(id1).add(id2);
+            }
+            this.numArcs += 2;
+            this.modCount++;
+            PipelineMetrics.add(PipelineMetrics.Counter.EDGES_ADDED, 2);
         }
     }
 
     /** 
      * Removes the edge between the two given vertices of this graph.
-     * If both vertices exist, the graph is not changed.
+     * If at least one of the vertices does not exist, the graph is not changed.
      * 
      * @param T start vertex of the edge
      * @param T end vertex of the edge
      */
     public void removeEdge (T vertex1, T vertex2) {
-        if (this.vertices.contains(vertex1) && this.vertices.contains(vertex2)) {
-            int index1 = this.vertices.indexOf(vertex1);
-            this.arcs.elementAt(index1).remove(vertex2);
-            int index2 = this.vertices.indexOf(vertex2);
-            this.arcs.elementAt(index2).remove(vertex1);
+        int id1 = this.getVertexId(vertex1);
+        int id2 = this.getVertexId(vertex2);
+        if (id1 >= 0 && id2 >= 0) {
+            if (this.arcs.get(id1).removeValue(id2)) {
+                if (this.inArcs != null) {
+                    this.inArcs.get(id2).removeValue(id1);
+                }
+                this.numArcs--;
+            }
+            if (this.arcs.get(id2).removeValue(id1)) {
+                if (this.inArcs != null) {
+                    this.inArcs.get(id1).removeValue(id2);
+                }
+                this.numArcs--;
+            }
+            this.modCount++;
         }
     }
 
@@ -242,44 +471,60 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @return String formatted respresentation of the graph components.
      */
     public String toString() {
-        String s = "***Vertices***\n";
-        s += this.vertices.toString();
-        s += "\n***Edges***\n";
+        StringBuilder s = new StringBuilder("***Vertices***\n");
+        s.append(this.vertices.toString());
+        s.append("\n***Edges***\n");
         for (int i = 0; i < this.arcs.size(); i++) {
-            s += "from " + this.vertices.elementAt(i) + ": " + this.arcs.elementAt(i) + "\n";
+            s.append("from ").append(this.vertices.get(i)).append(": ")
+                .append(this.getSuccessors(this.vertices.get(i))).append("\n");
         }
 
-        return s;
+        return s.toString();
     }
 
     /** 
-     * Writes this graph to a file in TGF format.
+     * Writes this graph to a file in TGF format. See GraphExporter for edge lists, GraphML and compression.
      * 
      * @param String name of the file to be written out
      */
     public void saveToTGF(String tgfFileName) {
         try {
-            PrintWriter writer = new PrintWriter(new File(tgfFileName));
-
-            for (int i = 1; i <= this.vertices.size(); i++) {
-                writer.println(i + " " + this.vertices.get(i - 1));
-            }
-            writer.println("#");
-            for (int i = 0; i < this.vertices.size(); i++) {
-                T vertex = this.vertices.get(i);
-                LinkedList<T> list = this.arcs.get(i);
-                for (int j = 0; j < list.size(); j++) {
-                    T vertexIndex = list.get(j);
-                    writer.println((this.vertices.indexOf(vertex)+1) + " " + 
-                        (this.vertices.indexOf(vertexIndex)+1));
-                }
-            }
-            writer.close();
+            new GraphExporter(this.freeze()).export(tgfFileName, GraphExporter.Format.TGF, false);
         } catch (IOException e) {
             System.out.println(e);
         }
     }
 
+    /**
+     * Freezes the current state of this graph into a read-only CSRGraph. Vertex IDs in the snapshot match
+     * getVertexId() at the time of the call, and later changes to this graph are not seen by the snapshot.
+     * The snapshot is cached and shared until the graph changes.
+     *
+     * @return CSRGraph<T> compressed sparse row snapshot of this graph
+     */
+    public CSRGraph<T> freeze() {
+        return this.cache.get("freeze", this.modCount, this::buildSnapshot);
+    }
+
+    /**
+     * Copies the adjacency lists into CSR arrays.
+     */
+    private CSRGraph<T> buildSnapshot() {
+        int n = this.vertices.size();
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[this.numArcs];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            offsets[i] = count;
+            IntList list = this.arcs.get(i);
+            for (int j = 0; j < list.size(); j++) {
+                targets[count++] = list.get(j);
+            }
+        }
+        offsets[n] = count;
+        return new CSRGraph<T>(this.vertices.toArray(), offsets, targets);
+    }
+
     /** 
      * Does a depth first search of the entire graph starting at the given point with no specific end point.
      * 
@@ -287,45 +532,7 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @return LinkedList<T> of the searched vertices
      */
     public LinkedList<T> depthFirstSearch(T vertex) {
-        ArrayStack<T> stk = new ArrayStack<T>();
-        LinkedList<T> result = new LinkedList<T>();
-        boolean[] marked = new boolean[this.vertices.size()];
-
-        for (int v = 0; v < this.vertices.size(); v++){  // mark each vertex as unvisited
-            marked[v] = false;
-        }
-        
-        T currentNode;
-        int currentIndex;
-        
-        // push/add starting vertex into stack, then mark it as visisted
-        stk.push(vertex); 
-        result.add(vertex);
-        marked[this.vertices.indexOf(vertex)] = true;
-
-        while(!stk.isEmpty()) {
-            currentNode = stk.peek();
-            currentIndex = this.vertices.indexOf(currentNode);
-            LinkedList<T> trackedArcs = this.arcs.get(currentIndex);
-            int i = 0;
-            
-            while(i <= trackedArcs.size()) {
-                if (i == trackedArcs.size()) {
-                    stk.pop();
-                }
-                // push vertex into stack and add to result list if it hasn't been visited
-                else if (marked[this.vertices.indexOf(trackedArcs.get(ii))] == false) {
-                    stk.push(trackedArcs.get(i)); 
-                    result.add(ctrackedArcs.get(i));
-                    marked[this.vertices.indexOf(trackedArcs.get(i))] = true;
-
-                    i = trackedArcs.size() + 1; 
-                } 
-
-                i++;
-            }
-        }
-        return result;
+        return this.depthFirstSearch2(vertex, null, false);
     }
     
     /** 
@@ -335,47 +542,35 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @return LinkedList<T> containing the vertices that are the outcome of the depth first search
      */
     public LinkedList<T> depthFirstSearch2(T vertex1, T vertex2) {
-        ArrayStack<T> stk = new ArrayStack<T>();
-        LinkedList<T> result = new LinkedList<T>();
-        boolean[] marked = new boolean[this.vertices.size()];
+        return this.depthFirstSearch2(vertex1, vertex2, true);
+    }
 
-        for (int v = 0; v < this.vertices.size(); v++){  // mark each vertex as unvisited
-            marked[v] = false;
+    /**
+     * Shared depth first search over vertex IDs, see Traversal.
+     *
+     * @param T starting vertex
+     * @param T vertex that ends the search once it is reached
+     * @param boolean true if the search should stop at the second vertex
+     * @return LinkedList<T> of the searched vertices, or an empty list if the second vertex was never found
+     */
+    private LinkedList<T> depthFirstSearch2(T vertex1, T vertex2, boolean stopAtTarget) {
+        LinkedList<T> result = new LinkedList<T>();
+        int start = this.getVertexId(vertex1);
+        if (start < 0) {
+            return result;
         }
-        
-        T currentNode;
-        int currentIndex;
+        int target = stopAtTarget ? this.getVertexId(vertex2) : -1;
+        Traversal traversal = new Traversal(start, Integer.MAX_VALUE, true);
         boolean isFound = false;
-
-        // push and add starting vertex into stack, then mark it as visited
-        stk.push(vertex1);  
-        result.add(vertex1);
-        marked[this.vertices.indexOf(vertex1)] = true;
-
-        while((!stk.isEmpty())&(isFound== false)) {
-            currentNode = stk.peek();
-            currentIndex = this.vertices.indexOf(currentNode);
-            LinkedList<T> trackedArcs = this.arcs.get(currentIndex);
-            int i = 0;
-            
-            while(i <= trackedArcs.size()) {
-                if (indexOfList == trackedArcs.size()) {
-                    stk.pop();
-                }
-                else if (marked[this.vertices.indexOf(trackedArcs.get(i))] == false) {
-                    if (trackedArcs.get(i) == vertex2) {  // push vertex and add to list if it hasn't been visited
-                        isFound = true;
-                    }
-                    stk.push(trackedArcs.get(i)); 
-                    result.add(trackedArcs.get(i));
-                    marked[this.vertices.indexOf(trackedArcs.get(i))] = true;
-
-                    i = trackedArcs.size() + 1; 
-                } 
-                i++;
-            }
+        while (!isFound && traversal.hasNext()) {
+            result.add(traversal.next());
+            isFound = traversal.lastId == target && traversal.lastDepth > 0;
+        }
+        traversal.finish();
+        if (stopAtTarget && !isFound) {
+            return new LinkedList<T>();
         }
-        return isFound ? result : new LinkedList<T>();
+        return result;
     }
     
     /** 
@@ -385,40 +580,317 @@ public class AdjListsGraph<T> implements Graph<T> {
      * @return LinkedList<T> containing the vertices that are the outcome of the breadth first search
      */
     public LinkedList<T> breadthFirstSearch(T vertex) {
-        LinkedQueue<T> q = new LinkedQueue<T>();       
-        LinkedList<T> iterator = new LinkedList<T>();
-        int count = 0;
+        LinkedList<T> result = new LinkedList<T>();
+        Iterator<T> traversal = this.breadthFirstIterator(vertex);
+        while (traversal.hasNext()) {
+            result.add(traversal.next());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the vertices of a breadth first search one at a time, in the order of breadthFirstSearch().
+     * Each vertex's arcs are only scanned once the vertex is returned, so stopping early skips the rest of
+     * the graph. The graph must not be changed until the iterator is used up.
+     *
+     * @param T starting vertex
+     * @return Iterator<T> over the reached vertices, empty if the vertex is not in this graph
+     */
+    public Iterator<T> breadthFirstIterator(T vertex) {
+        return new Traversal(this.getVertexId(vertex), Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Returns the vertices of a depth first search one at a time, in the order of depthFirstSearch().
+     * The graph must not be changed until the iterator is used up.
+     *
+     * @param T starting vertex
+     * @return Iterator<T> over the reached vertices, empty if the vertex is not in this graph
+     */
+    public Iterator<T> depthFirstIterator(T vertex) {
+        return new Traversal(this.getVertexId(vertex), Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * Returns the vertices of a breadth first search as a sequential Stream, for example
+     * breadthFirstStream(v).filter(...).findFirst(). Closing the stream lets the next traversal reuse its arrays.
+     *
+     * @param T starting vertex
+     * @return Stream<T> of the reached vertices, empty if the vertex is not in this graph
+     */
+    public Stream<T> breadthFirstStream(T vertex) {
+        return this.stream(new Traversal(this.getVertexId(vertex), Integer.MAX_VALUE, false));
+    }
+
+    /**
+     * Returns the vertices of a depth first search as a sequential Stream.
+     * Closing the stream lets the next traversal reuse its arrays.
+     *
+     * @param T starting vertex
+     * @return Stream<T> of the reached vertices, empty if the vertex is not in this graph
+     */
+    public Stream<T> depthFirstStream(T vertex) {
+        return this.stream(new Traversal(this.getVertexId(vertex), Integer.MAX_VALUE, true));
+    }
 
-        boolean[] marked = new boolean[this.vertices.size()];
+    /**
+     * Wraps a traversal in a stream that ends it when closed.
+     */
+    private Stream<T> stream(Traversal traversal) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(traversal,
+            Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false).onClose(traversal::finish);
+    }
+
+    /**
+     * Does a breadth first search that calls the visitor for each vertex up to the given number of hops
+     * away, in order of distance, and stops as soon as the visitor returns false.
+     *
+     * @param T starting vertex
+     * @param int most hops from the starting vertex, Integer.MAX_VALUE for no limit
+     * @param GraphVisitor<T> called with each vertex and its distance
+     * @return int number of vertices visited, including the one that stopped the search
+     */
+    public int visitBreadthFirst(T vertex, int maxDepth, GraphVisitor<T> visitor) {
+        return this.visit(new Traversal(this.getVertexId(vertex), maxDepth, false), visitor);
+    }
 
-        for (int v = 0; v < this.vertices.size(); v++){ // mark each vertex as unvisited
-            marked[v] = false;
+    /**
+     * Does a depth first search that calls the visitor for each vertex on the way down and stops as soon as
+     * the visitor returns false. Vertices deeper than maxDepth along the search are not entered, so a vertex
+     * first met on a long path is not reached again on a shorter one.
+     *
+     * @param T starting vertex
+     * @param int most arcs on the path from the starting vertex, Integer.MAX_VALUE for no limit
+     * @param GraphVisitor<T> called with each vertex and its depth in the search
+     * @return int number of vertices visited, including the one that stopped the search
+     */
+    public int visitDepthFirst(T vertex, int maxDepth, GraphVisitor<T> visitor) {
+        return this.visit(new Traversal(this.getVertexId(vertex), maxDepth, true), visitor);
+    }
+
+    /**
+     * Counts the vertices at most the given number of hops away, including the starting vertex.
+     *
+     * @param T starting vertex
+     * @param int most hops from the starting vertex
+     * @return int number of vertices within the distance, or 0 if the vertex is not in this graph
+     */
+    public int countWithin(T vertex, int maxDepth) {
+        Traversal traversal = new Traversal(this.getVertexId(vertex), maxDepth, false);
+        while (traversal.hasNextId()) {
+            traversal.nextId();
         }
+        return traversal.visited;
+    }
+
+    /**
+     * Runs a traversal, passing each vertex to the visitor until it returns false.
+     */
+    private int visit(Traversal traversal, GraphVisitor<T> visitor) {
+        while (traversal.hasNext()) {
+            if (!visitor.visit(traversal.next(), traversal.lastDepth)) {
+                break;
+            }
+        }
+        traversal.finish();
+        return traversal.visited;
+    }
+
+    /**
+     * Scratch holds the arrays a traversal works in. A vertex is marked as reached by writing the number of
+     * the current traversal into its stamp, so the next traversal starts with a new number instead of
+     * clearing the array, and the arrays are only allocated again when the graph outgrows them.
+     */
+    private static class Scratch {
+        private int[] stamp = new int[0];
+        private int[] queue = new int[0];  // BFS queue or DFS stack of vertex IDs
+        private int[] depth = new int[0];  // distance of each BFS queue entry
+        private int[] nextArc = new int[0];  // position of the next arc to try for each vertex on the DFS stack
+        private int epoch;
+
+        /**
+         * Gets the arrays ready for a traversal of n vertices.
+         */
+        private void begin(int n) {
+            if (this.stamp.length < n) {
+                int capacity = Math.max(n, this.stamp.length + this.stamp.length / 2);
+                this.stamp = new int[capacity];
+                this.queue = new int[capacity];
+                this.depth = new int[capacity];
+                this.nextArc = new int[capacity];
+                this.epoch = 0;
+            }
+            if (++this.epoch == Integer.MAX_VALUE) {
+                Arrays.fill(this.stamp, 0);
+                this.epoch = 1;
+            }
+        }
+    }
 
-        q.enqueue(vertex);
-        marked[(this.vertices.indexOf(vertex))] = true;
-        T currentVertex;
-        int currentIndex;
-        LinkedList<T> currentList;
+    /**
+     * Traversal is a breadth or depth first search that advances one vertex per call to next(). The
+     * breadth first search scans a vertex's arcs when the vertex is returned. The depth first search keeps,
+     * for each vertex on its stack, the position of the next arc to try, so each arc is looked at once and
+     * the search runs in O(V + E). Both borrow the graph's Scratch arrays, or new ones if another
+     * traversal is still using them, and give them back when they finish.
+     */
+    private class Traversal implements Iterator<T> {
+
+        // instance variables
+        private final boolean depthFirst;
+        private final int maxDepth;
+        private final long expectedModCount;
+        private final PipelineMetrics.TraversalEvent event;
+        private Scratch scratch;
+        private int head;  // next BFS queue entry to return
+        private int tail;  // end of the BFS queue, or top of the DFS stack
+        private int pending;  // next DFS vertex to return, or -1 if it has to be searched for
+        private int lastId;
+        private int lastDepth;
+        private int visited;
+
+        /**
+         * Constructor starts a traversal from the given vertex ID, or an empty one if the ID is -1.
+         */
+        private Traversal(int start, int maxDepth, boolean depthFirst) {
+            this.depthFirst = depthFirst;
+            this.maxDepth = maxDepth;
+            this.expectedModCount = modCount;
+            this.event = PipelineMetrics.startTraversal();
+            this.pending = -1;
+            this.lastId = -1;
+            if (start < 0) {
+                return;
+            }
+            this.scratch = spare != null ? spare : new Scratch();
+            spare = null;
+            this.scratch.begin(vertices.size());
+            this.scratch.stamp[start] = this.scratch.epoch;
+            this.scratch.queue[0] = start;
+            this.scratch.depth[0] = 0;
+            this.scratch.nextArc[start] = 0;
+            this.tail = 1;
+            this.pending = start;
+        }
 
-        while (!q.isEmpty()) {
-            currentVertex = q.dequeue();
-            currentIndex = this.vertices.indexOf(currentVertex);
+        public boolean hasNext() {
+            return this.hasNextId();
+        }
 
-            iterator.add(current);
-            count++;
-            currentList = this.arcs.get(currentIndex);
-            for(int i = 0; i < currentList.size(); i++) {
-                T currentNode = currentList.get(i);
+        public T next() {
+            return vertices.get(this.nextId());
+        }
 
-                // enqueue vertex if it hasn't been visited and if arcs exist at from vertex (not null)
-                if (!marked[this.vertices.indexOf(currentNode)] && !(currentNode ==null)) {
-                    q.enqueue(currentNodeInList);
-                    marked[this.vertices.indexOf(currentNode)] = true;
+        /**
+         * Returns a boolean indicating whether there is another vertex to reach.
+         */
+        private boolean hasNextId() {
+            if (this.scratch == null) {
+                return false;
+            }
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.depthFirst ? this.pending < 0 && !this.advance() : this.head == this.tail) {
+                this.finish();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the ID of the next vertex reached.
+         */
+        private int nextId() {
+            if (!this.hasNextId()) {
+                throw new NoSuchElementException();
+            }
+            Scratch s = this.scratch;
+            if (this.depthFirst) {
+                this.lastId = this.pending;
+                this.lastDepth = this.tail - 1;
+                this.pending = -1;
+            } else {
+                this.lastId = s.queue[this.head];
+                this.lastDepth = s.depth[this.head++];
+                if (this.lastDepth < this.maxDepth) {
+                    IntList list = arcs.get(this.lastId);
+                    for (int i = 0; i < list.size(); i++) {
+                        int next = list.get(i);
+                        if (s.stamp[next] != s.epoch) {  // enqueue vertex if it hasn't been visited
+                            s.stamp[next] = s.epoch;
+                            s.queue[this.tail] = next;
+                            s.depth[this.tail++] = this.lastDepth + 1;
+                        }
+                    }
+                }
+            }
+            this.visited++;
+            return this.lastId;
+        }
+
+        /**
+         * Moves the depth first search on to the next unvisited vertex and returns false if there is none.
+         */
+        private boolean advance() {
+            Scratch s = this.scratch;
+            while (this.tail > 0) {
+                int current = s.queue[this.tail - 1];
+                IntList trackedArcs = arcs.get(current);
+                if (this.tail - 1 < this.maxDepth) {
+                    // skip over arcs that lead to vertices already visited
+                    while (s.nextArc[current] < trackedArcs.size() && s.stamp[trackedArcs.get(s.nextArc[current])] == s.epoch) {
+                        s.nextArc[current]++;
+                    }
+                    if (s.nextArc[current] < trackedArcs.size()) {  // push the vertex since it hasn't been visited
+                        int next = trackedArcs.get(s.nextArc[current]++);
+                        s.stamp[next] = s.epoch;
+                        s.nextArc[next] = 0;
+                        s.queue[this.tail++] = next;
+                        this.pending = next;
+                        return true;
+                    }
                 }
+                this.tail--;
             }
+            return false;
+        }
+
+        /**
+         * Ends the traversal and gives its arrays back to the graph. Later calls do nothing.
+         */
+        private void finish() {
+            if (this.scratch == null) {
+                return;
+            }
+            if (spare == null) {
+                spare = this.scratch;
+            }
+            this.scratch = null;
+            PipelineMetrics.endTraversal(this.event, this.depthFirst ? "dfs" : "bfs", this.visited);
         }
-        return iterator;
+    }
+
+    /**
+     * Does a breadth first search of the graph on all available cores. Each level is expanded either
+     * top-down or bottom-up depending on the size of the frontier, see ParallelBreadthFirstSearch.
+     * The same vertices are reached as with breadthFirstSearch(); within a level they are ordered by ID.
+     * 
+     * @param T starting vertex 
+     * @return LinkedList<T> containing the vertices that are the outcome of the breadth first search
+     */
+    public LinkedList<T> parallelBreadthFirstSearch(T vertex) {
+        LinkedList<T> result = new LinkedList<T>();
+        int start = this.getVertexId(vertex);
+        if (start < 0) {
+            return result;
+        }
+
+        int[] reached = new ParallelBreadthFirstSearch(this.freeze()).search(start).getReachedIds();
+        for (int i = 0; i < reached.length; i++) {
+            result.add(this.vertices.get(reached[i]));
+        }
+        return result;
     }
 
     /**
@@ -438,6 +910,16 @@ public class AdjListsGraph<T> implements Graph<T> {
         System.out.println(g1.toString());
         System.out.println("isArc(): \nExpected: true \nGot:" + g1.isArc("a", "b"));
         System.out.println("\nisEdge(): \nExpected: false \nGot:" + g1.isEdge("a", "b"));
+        AdjListsGraph<String> indexed = new AdjListsGraph<String>(true);
+        indexed.addVertex("a");
+        indexed.addVertex("b");
+        indexed.addVertex("c");
+        indexed.addArc("b", "a");
+        indexed.addEdge("a", "c");
+        indexed.removeArc("b", "a");
+        indexed.addArc("c", "a");
+        System.out.println("\ngetPredecessors() with index: \nExpected: [c] \nGot:" + indexed.getPredecessors("a"));
+        System.out.println("\nisUndirected() with index: \nExpected: true \nGot:" + indexed.isUndirected());
         System.out.println(g1.depthFirstSearch("a"));
         System.out.println((g1.breadthFirstSearch("a")));
         // g1.saveToTGF("string_graph.txt");
@@ -466,9 +948,32 @@ public class AdjListsGraph<T> implements Graph<T> {
         System.out.println(tree.toString());
         System.out.println("breadthFirstSearch(): \nExpected: {a, b, c, d, e, f, g, h, i, j} \nGot:");
         System.out.println((tree.breadthFirstSearch("a")));
+        System.out.println("\nparallelBreadthFirstSearch(): \nExpected: {a, b, c, d, e, f, g, h, i, j} \nGot:");
+        System.out.println((tree.parallelBreadthFirstSearch("a")));
         System.out.println("\ndepthFirstSearch(): \nExpected: {a, b, c, d, e, f, g, h, i, j} \nGot:");
         System.out.println((tree.depthFirstSearch("a")));
-        System.out.println(tree.toString());
+        System.out.println("\nfreeze(): \nExpected: same vertices and edges as above \nGot:");
+        System.out.println(tree.freeze());
+        CSRGraph<String> frozen = tree.freeze();
+        boolean cached = frozen == tree.freeze();
+        tree.addEdge("a", "j");
+        CSRGraph<String> grown = tree.freeze();
+        tree.removeEdge("a", "j");
+        System.out.println("\nfreeze() cached until a change: \nExpected: true true 20 \nGot:" + cached + " "
+            + (grown != frozen) + " " + grown.getNumArcs());
+        System.out.println("\ncountWithin() two hops: \nExpected: 7 \nGot:" + tree.countWithin("a", 2));
+        System.out.println("\nvisitBreadthFirst() stopping at e: \nExpected: 5 \nGot:"
+            + tree.visitBreadthFirst("a", Integer.MAX_VALUE, (v, depth) -> !v.equals("e")));
+        System.out.println("\nvisitDepthFirst() one hop: \nExpected: 3 \nGot:" + tree.visitDepthFirst("a", 1, (v, depth) -> true));
+        String afterG;
+        try (Stream<String> stream = tree.depthFirstStream("a")) {
+            afterG = stream.filter(v -> v.compareTo("g") > 0).findFirst().get();
+        }
+        System.out.println("\ndepthFirstStream() first after g: \nExpected: h \nGot:" + afterG);
+        Scratch returned = tree.spare;
+        tree.countWithin("a", 2);
+        System.out.println("\nclosed stream's arrays reused by the next traversal: \nExpected: true \nGot:"
+            + (returned != null && tree.spare == returned));
         // tree.saveToTGF("Tree.tgf");
 
         System.out.println("\n***Test Cycle of Strings***");
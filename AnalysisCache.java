@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * AnalysisCache keeps the results of expensive graph analyses, keyed by the name of the analysis and its
+ * parameters. Each result is stored with the modification version of the graph it was computed on, such as
+ * AdjListsGraph.getModCount() or TweeterCollection.getVersion(). A result is only returned while the graph
+ * is still at that version, so a change to the graph invalidates every result without the graph having to
+ * know about the cache. When the cache is full the least recently used result is dropped.
+ *
+ * Results are computed outside the cache's lock, so a slow analysis does not hold up lookups of others.
+ * Two threads that miss on the same key at once may both compute it. Results are shared between callers,
+ * so they should not be modified.
+ *
+ * AnalysisCache.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class AnalysisCache {
+
+    /**
+     * Entry holds a result with the version it was computed at.
+     */
+    private static class Entry {
+        private final long version;
+        private final Object value;
+
+        private Entry(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    // instance variables
+    private final LinkedHashMap<List<Object>,Entry> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor creates an empty AnalysisCache that holds up to the given number of results.
+     *
+     * @param int most results kept
+     */
+    public AnalysisCache(int capacity) {
+        this.entries = new LinkedHashMap<List<Object>,Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<List<Object>,Entry> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the result of an analysis at the given version of the graph, computing it if it is not cached
+     * or was computed at another version.
+     *
+     * @param String name of the analysis
+     * @param long current version of the graph
+     * @param Supplier that runs the analysis
+     * @param Object... parameters of the analysis, which must have equals() and hashCode()
+     * @return V result of the analysis, which is not cached if it is null
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String name, long version, Supplier<V> analysis, Object... params) {
+        List<Object> key = key(name, params);
+        synchronized (this) {
+            Entry entry = this.entries.get(key);
+            if (entry != null && entry.version == version) {
+                this.hits++;
+                return (V) entry.value;
+            }
+            this.misses++;
+        }
+        V value = analysis.get();
+        if (value != null) {
+            synchronized (this) {
+                // an entry at any other version, even a later one, would never be returned to this caller
+                this.entries.put(key, new Entry(version, value));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops every result.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Getter method for obtaining the number of results cached, including those of older versions.
+     *
+     * @return int number of results
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Getter method for obtaining the number of lookups answered from the cache.
+     *
+     * @return long number of hits
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Getter method for obtaining the number of lookups that ran the analysis.
+     *
+     * @return long number of misses
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the key of an analysis and its parameters.
+     */
+    private static List<Object> key(String name, Object[] params) {
+        Object[] key = new Object[params.length + 1];
+        key[0] = name;
+        System.arraycopy(params, 0, key, 1, params.length);
+        return Arrays.asList(key);
+    }
+}
@@ -0,0 +1,331 @@
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * BipartiteGraph models which Twitter users shared which stories. Users and stories live in separate ID
+ * ranges, each numbered densely from 0 in the order they were added, so a screen name that happens to
+ * equal a story ID is still two different vertices. Each side keeps its own adjacency lists and an array
+ * of degrees, so statistics and traversals work on ints once the names have been looked up. Screen names
+ * and story IDs are interned in a StringDictionary per side, whose codes are the IDs.
+ *
+ * Where a single vertex space is needed, such as in freeze() or breadthFirstSearch(), user u is vertex u
+ * and story s is vertex getNumUsers() + s.
+ *
+ * BipartiteGraph.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class BipartiteGraph {
+
+    // instance variables
+    private StringDictionary users;  // screen name of each user ID
+    private StringDictionary stories;  // story ID of each story
+    private Vector<IntList> userStories;  // story IDs shared by each user
+    private Vector<IntList> storyUsers;  // user IDs that shared each story
+    private int[] userDegree;
+    private int[] storyDegree;
+    private int numEdges;
+
+    /**
+     * Constructor creates an empty BipartiteGraph object and initializes instance variables.
+     */
+    public BipartiteGraph() {
+        this.users = new StringDictionary();
+        this.stories = new StringDictionary();
+        this.userStories = new Vector<IntList>();
+        this.storyUsers = new Vector<IntList>();
+        this.userDegree = new int[16];
+        this.storyDegree = new int[16];
+        this.numEdges = 0;
+    }
+
+    /**
+     * Getter method for obtaining the number of users.
+     *
+     * @return int total number of users
+     */
+    public int getNumUsers() {
+        return this.users.size();
+    }
+
+    /**
+     * Getter method for obtaining the number of stories.
+     *
+     * @return int total number of stories
+     */
+    public int getNumStories() {
+        return this.stories.size();
+    }
+
+    /**
+     * Getter method for obtaining the number of user-story edges.
+     *
+     * @return int total number of edges
+     */
+    public int getNumEdges() {
+        return this.numEdges;
+    }
+
+    /**
+     * Adds the user with the given screen name, if it is not already in this graph.
+     *
+     * @param String screen name
+     * @return int ID of the user
+     */
+    public int addUser(String screenName) {
+        PipelineMetrics.add(PipelineMetrics.Counter.VERTEX_LOOKUPS, 1);
+        int newId = this.users.add(screenName);
+        if (newId < this.userStories.size()) {
+            return newId;
+        }
+        this.userStories.add(new IntList());
+        if (newId == this.userDegree.length) {
+            this.userDegree = Arrays.copyOf(this.userDegree, newId * 2);
+        }
+        return newId;
+    }
+
+    /**
+     * Adds the story with the given ID, if it is not already in this graph.
+     *
+     * @param String story ID
+     * @return int ID of the story in this graph
+     */
+    public int addStory(String storyId) {
+        PipelineMetrics.add(PipelineMetrics.Counter.VERTEX_LOOKUPS, 1);
+        int newId = this.stories.add(storyId);
+        if (newId < this.storyUsers.size()) {
+            return newId;
+        }
+        this.storyUsers.add(new IntList());
+        if (newId == this.storyDegree.length) {
+            this.storyDegree = Arrays.copyOf(this.storyDegree, newId * 2);
+        }
+        return newId;
+    }
+
+    /**
+     * Records that the given user shared the given story.
+     *
+     * @param int ID of the user
+     * @param int ID of the story
+     */
+    public void addShare(int user, int story) {
+        this.userStories.get(user).add(story);
+        this.storyUsers.get(story).add(user);
+        this.userDegree[user]++;
+        this.storyDegree[story]++;
+        this.numEdges++;
+        PipelineMetrics.add(PipelineMetrics.Counter.EDGES_ADDED, 1);
+    }
+
+    /**
+     * Returns a boolean indicating whether the given user has shared the given story. Only the shorter
+     * of the two adjacency lists is scanned.
+     *
+     * @param int ID of the user
+     * @param int ID of the story
+     * @return boolean true if the share is in this graph, false otherwise
+     */
+    public boolean hasShare(int user, int story) {
+        if (this.userDegree[user] <= this.storyDegree[story]) {
+            return this.userStories.get(user).contains(story);
+        }
+        return this.storyUsers.get(story).contains(user);
+    }
+
+    /**
+     * Returns the ID of the user with the given screen name.
+     *
+     * @param String screen name
+     * @return int ID of the user, or -1 if there is no such user
+     */
+    public int getUserId(String screenName) {
+        PipelineMetrics.add(PipelineMetrics.Counter.VERTEX_LOOKUPS, 1);
+        return this.users.find(screenName);
+    }
+
+    /**
+     * Returns the ID of the given story.
+     *
+     * @param String story ID
+     * @return int ID of the story in this graph, or -1 if there is no such story
+     */
+    public int getStoryId(String storyId) {
+        PipelineMetrics.add(PipelineMetrics.Counter.VERTEX_LOOKUPS, 1);
+        return this.stories.find(storyId);
+    }
+
+    /**
+     * Returns the screen name of the given user.
+     *
+     * @param int ID of the user
+     * @return String screen name
+     */
+    public String getUser(int user) {
+        return this.users.get(user);
+    }
+
+    /**
+     * Returns the story ID of the given story.
+     *
+     * @param int ID of the story in this graph
+     * @return String story ID
+     */
+    public String getStory(int story) {
+        return this.stories.get(story);
+    }
+
+    /**
+     * Getter method for obtaining the memory held by the dictionaries of screen names and story IDs.
+     *
+     * @return long bytes allocated by both dictionaries
+     */
+    public long getDictionaryBytes() {
+        return this.users.getByteSize() + this.stories.getByteSize();
+    }
+
+    /**
+     * Returns the number of stories shared by the given user.
+     *
+     * @param int ID of the user
+     * @return int degree of the user
+     */
+    public int getUserDegree(int user) {
+        return this.userDegree[user];
+    }
+
+    /**
+     * Returns the number of users that shared the given story.
+     *
+     * @param int ID of the story
+     * @return int degree of the story
+     */
+    public int getStoryDegree(int story) {
+        return this.storyDegree[story];
+    }
+
+    /**
+     * Returns the stories shared by the given user.
+     *
+     * @param int ID of the user
+     * @return int[] IDs of the stories, in the order they were added
+     */
+    public int[] getStoriesOf(int user) {
+        return this.userStories.get(user).toArray();
+    }
+
+    /**
+     * Returns the users that shared the given story.
+     *
+     * @param int ID of the story
+     * @return int[] IDs of the users, in the order they were added
+     */
+    public int[] getUsersOf(int story) {
+        return this.storyUsers.get(story).toArray();
+    }
+
+    /**
+     * Returns a boolean indicating whether the given vertex of the single vertex space is a story.
+     *
+     * @param int vertex ID, users first and then stories
+     * @return boolean true if the vertex is a story, false if it is a user
+     */
+    public boolean isStoryVertex(int vertex) {
+        return vertex >= this.users.size();
+    }
+
+    /**
+     * Does a breadth first search of the graph, alternating between users and stories.
+     *
+     * @param int starting vertex ID, users first and then stories
+     * @return int[] vertex IDs of the searched vertices in the order they were reached
+     */
+    public int[] breadthFirstSearch(int vertex) {
+        int numUsers = this.users.size();
+        int n = numUsers + this.stories.size();
+        int[] q = new int[n];
+        boolean[] marked = new boolean[n];
+        int head = 0;
+        int tail = 0;
+        PipelineMetrics.TraversalEvent event = PipelineMetrics.startTraversal();
+
+        q[tail++] = vertex;
+        marked[vertex] = true;
+        while (head < tail) {
+            int current = q[head++];
+            boolean isStory = current >= numUsers;
+            IntList list = isStory ? this.storyUsers.get(current - numUsers) : this.userStories.get(current);
+            int offset = isStory ? 0 : numUsers;  // neighbours are always on the other side
+            for (int i = 0; i < list.size(); i++) {
+                int next = list.get(i) + offset;
+                if (!marked[next]) {
+                    marked[next] = true;
+                    q[tail++] = next;
+                }
+            }
+        }
+        PipelineMetrics.endTraversal(event, "bipartite-bfs", tail);
+        return Arrays.copyOf(q, tail);
+    }
+
+    /**
+     * Freezes the current state of this graph into a read-only CSRGraph with an arc in each direction for
+     * every edge. User u is vertex u and story s is vertex getNumUsers() + s, and each vertex is labelled
+     * with its screen name or story ID.
+     *
+     * @return CSRGraph<String> compressed sparse row snapshot of this graph
+     */
+    public CSRGraph<String> freeze() {
+        int numUsers = this.users.size();
+        int n = numUsers + this.stories.size();
+        Object[] labels = new Object[n];
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[2 * this.numEdges];
+        int count = 0;
+
+        for (int u = 0; u < numUsers; u++) {
+            labels[u] = this.users.get(u);  // decoded once, shared by every analysis of the snapshot
+            offsets[u] = count;
+            IntList list = this.userStories.get(u);
+            for (int i = 0; i < list.size(); i++) {
+                targets[count++] = numUsers + list.get(i);
+            }
+        }
+        for (int s = 0; s < this.stories.size(); s++) {
+            labels[numUsers + s] = this.stories.get(s);
+            offsets[numUsers + s] = count;
+            IntList list = this.storyUsers.get(s);
+            for (int i = 0; i < list.size(); i++) {
+                targets[count++] = list.get(i);
+            }
+        }
+        offsets[n] = count;
+        return new CSRGraph<String>(labels, offsets, targets);
+    }
+
+    /**
+     * Builds an AdjListsGraph of screen names and story IDs with an edge for every share. A screen name
+     * that equals a story ID becomes a single vertex there, so this is only for code that needs the
+     * general Graph interface.
+     *
+     * @return AdjListsGraph<String> of users and stories
+     */
+    public AdjListsGraph<String> toAdjListsGraph() {
+        AdjListsGraph<String> graph = new AdjListsGraph<String>();
+        String[] storyIds = this.stories.toArray();  // decode each name once, so the graph shares the Strings
+        for (int u = 0; u < this.users.size(); u++) {
+            String user = this.users.get(u);
+            graph.addVertex(user);
+            IntList list = this.userStories.get(u);
+            for (int i = 0; i < list.size(); i++) {
+                String story = storyIds[list.get(i)];
+                graph.addVertex(story);
+                graph.addEdge(user, story);
+            }
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * BotNetworkGenerator writes synthetic account/story files in the five-column format read by
+ * TweeterCollection: screen name, user ID, tweet count, story count and a comma separated list of story IDs.
+ * Story popularity follows a Zipf law, so a few stories are shared by many accounts and most by a handful.
+ * The number of stories per account is geometric around the mean that gives the requested number of edges.
+ *
+ * Coordinated clusters can be planted on top: every member of a cluster shares most of the cluster's own
+ * set of stories, picked from the unpopular tail so they stand out. The members of each cluster are written
+ * to a second file, one cluster per line, so similarity searches can be checked against them.
+ *
+ * BotNetworkGenerator.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class BotNetworkGenerator {
+
+    private static final double CLUSTER_SHARE = 0.8;  // chance a member shares each story of its cluster
+
+    // instance variables
+    private final int users;
+    private final int stories;
+    private final long edges;
+    private final double[] cumulative;  // Zipf distribution over the stories
+    private final Random random;
+    private int clusters;
+    private int clusterSize;
+    private int clusterStories;
+
+    /**
+     * Constructor creates a BotNetworkGenerator without planted clusters.
+     *
+     * @param int number of accounts
+     * @param int number of stories
+     * @param long number of account-story edges wanted, about
+     * @param double Zipf exponent of story popularity, such as 1.1
+     * @param long seed of the random numbers
+     */
+    public BotNetworkGenerator(int users, int stories, long edges, double exponent, long seed) {
+        this.users = users;
+        this.stories = stories;
+        this.edges = edges;
+        this.random = new Random(seed);
+        this.cumulative = new double[stories];
+        double total = 0;
+        for (int s = 0; s < stories; s++) {
+            total += 1 / Math.pow(s + 1, exponent);
+            this.cumulative[s] = total;
+        }
+        for (int s = 0; s < stories; s++) {
+            this.cumulative[s] /= total;
+        }
+    }
+
+    /**
+     * Plants coordinated clusters among the accounts. Members are the first accounts of the file.
+     *
+     * @param int number of clusters
+     * @param int number of accounts in each cluster
+     * @param int number of stories each cluster pushes
+     */
+    public void plantClusters(int count, int size, int storiesPerCluster) {
+        this.clusters = count;
+        this.clusterSize = size;
+        this.clusterStories = storiesPerCluster;
+    }
+
+    /**
+     * Writes the data file, and the cluster members to fileName + ".clusters" if clusters are planted.
+     *
+     * @param String name of the data file
+     * @return long number of edges written
+     * @throws IOException if a file cannot be written
+     */
+    public long write(String fileName) throws IOException {
+        int[][] clusterPools = new int[this.clusters][];
+        for (int c = 0; c < this.clusters; c++) {
+            clusterPools[c] = new int[this.clusterStories];
+            for (int i = 0; i < this.clusterStories; i++) {  // from the less popular half
+                clusterPools[c][i] = this.stories / 2 + this.random.nextInt(Math.max(this.stories - this.stories / 2, 1));
+            }
+        }
+
+        int planted = Math.min(this.clusters * this.clusterSize, this.users);
+        double mean = Math.max((double) this.edges / this.users, 1);
+        long written = 0;
+        IntList chosen = new IntList();
+        StringBuilder line = new StringBuilder();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+            for (int u = 0; u < this.users; u++) {
+                chosen.clear();
+                if (u < planted) {
+                    for (int story : clusterPools[u / this.clusterSize]) {
+                        if (this.random.nextDouble() < CLUSTER_SHARE && !chosen.contains(story)) {
+                            chosen.add(story);
+                        }
+                    }
+                }
+                int degree = u < planted ? chosen.size() + this.geometric(2) : this.geometric(mean);  // members add some noise
+                for (int attempts = 0; chosen.size() < degree && attempts < 4 * degree; attempts++) {
+                    int story = this.zipf();
+                    if (!chosen.contains(story)) {
+                        chosen.add(story);
+                    }
+                }
+
+                line.setLength(0);
+                line.append('u').append(u).append('\t').append(1000000 + u).append('\t')
+                    .append(chosen.size() * (1 + this.random.nextInt(20))).append('\t').append(chosen.size()).append('\t');
+                for (int i = 0; i < chosen.size(); i++) {
+                    line.append(i > 0 ? "," : "").append('s').append(chosen.get(i));
+                }
+                writer.append(line).append('\n');
+                written += chosen.size();
+            }
+        }
+
+        if (this.clusters > 0) {
+            try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(fileName + ".clusters")))) {
+                for (int c = 0; c < this.clusters; c++) {
+                    StringBuilder members = new StringBuilder();
+                    for (int u = c * this.clusterSize; u < Math.min((c + 1) * this.clusterSize, planted); u++) {
+                        members.append(members.length() > 0 ? "," : "").append('u').append(u);
+                    }
+                    writer.println(members);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Draws a story from the Zipf distribution.
+     */
+    private int zipf() {
+        int i = Arrays.binarySearch(this.cumulative, this.random.nextDouble());
+        return Math.min(i >= 0 ? i : -i - 1, this.stories - 1);
+    }
+
+    /**
+     * Draws a number of stories of at least 1 from a geometric distribution with the given mean.
+     */
+    private int geometric(double mean) {
+        if (mean <= 1) {
+            return 1;
+        }
+        double p = 1 / mean;
+        return 1 + (int) (Math.log(1 - this.random.nextDouble()) / Math.log(1 - p));
+    }
+
+    /**
+     * Main method writes a data file: file name, number of edges, and optionally the number of users,
+     * stories, planted clusters and the seed.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java BotNetworkGenerator file edges [users] [stories] [clusters] [seed]");
+            return;
+        }
+        long edges = Long.parseLong(args[1]);
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : (int) Math.max(edges / 10, 100);
+        int stories = args.length > 3 ? Integer.parseInt(args[3]) : (int) Math.max(edges / 50, 50);
+        int clusters = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+
+        BotNetworkGenerator generator = new BotNetworkGenerator(users, stories, edges, 1.1, seed);
+        generator.plantClusters(clusters, 20, 30);
+        long written = generator.write(args[0]);
+        System.out.println("Wrote " + users + " users, " + stories + " stories and " + written + " edges to " + args[0]);
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * CSRGraph is a read-only snapshot of a graph in compressed sparse row form. The arcs leaving vertex v are
+ * stored in targets[offsets[v]] through targets[offsets[v + 1] - 1], so a traversal is a sequential scan of
+ * two int arrays instead of a walk over linked list nodes. A CSRGraph is created by AdjListsGraph.freeze()
+ * and never changes afterwards, so it can be shared freely between analyses and threads.
+ *
+ * CSRGraph.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class CSRGraph<T> {
+
+    // instance variables
+    private final Object[] labels;
+    private final int[] offsets;
+    private final int[] targets;
+    private HashMap<T,Integer> vertexIds;
+
+    /**
+     * Constructor creates a CSRGraph from already built arrays. The arrays are kept, not copied.
+     *
+     * @param Object[] vertex stored under each ID
+     * @param int[] start of each vertex's arcs in the targets array, with one extra entry at the end
+     * @param int[] end vertex of every arc, grouped by start vertex
+     */
+    CSRGraph(Object[] labels, int[] offsets, int[] targets) {
+        this.labels = labels;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Getter method for obtaining the number of vertices in this graph.
+     *
+     * @return int total number of vertices
+     */
+    public int getNumVertices() {
+        return this.labels.length;
+    }
+
+    /**
+     * Getter method for obtaining the number of arcs in this graph.
+     *
+     * @return int total number of arcs
+     */
+    public int getNumArcs() {
+        return this.targets.length;
+    }
+
+    /**
+     * Returns the vertex with the given ID.
+     *
+     * @param int ID of the vertex
+     * @return T vertex stored under that ID
+     */
+    @SuppressWarnings("unchecked")
+    public T getVertex(int id) {
+        return (T) this.labels[id];
+    }
+
+    /**
+     * Returns the ID of the given vertex. The lookup table is built on the first call, so analyses that
+     * only work on IDs never pay for it.
+     *
+     * @param T given vertex
+     * @return int ID of the vertex, or -1 if the vertex is not in this graph
+     */
+    public synchronized int getVertexId(T vertex) {
+        if (this.vertexIds == null) {
+            this.vertexIds = new HashMap<T,Integer>(this.labels.length * 2);
+            for (int i = this.labels.length - 1; i >= 0; i--) {  // the lowest ID wins for repeated labels
+                this.vertexIds.put(this.getVertex(i), i);
+            }
+        }
+        Integer id = this.vertexIds.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the number of arcs leaving the given vertex.
+     *
+     * @param int ID of the vertex
+     * @return int out-degree of the vertex
+     */
+    public int getOutDegree(int id) {
+        return this.offsets[id + 1] - this.offsets[id];
+    }
+
+    /**
+     * Getter method for obtaining the offsets array. The array is shared with this graph and must not be modified.
+     *
+     * @return int[] start of each vertex's arcs in the targets array, of length getNumVertices() + 1
+     */
+    public int[] getOffsets() {
+        return this.offsets;
+    }
+
+    /**
+     * Getter method for obtaining the targets array. The array is shared with this graph and must not be modified.
+     *
+     * @return int[] end vertex of every arc, grouped by start vertex
+     */
+    public int[] getTargets() {
+        return this.targets;
+    }
+
+    /**
+     * Returns all the vertices succeeding the given vertex.
+     *
+     * @param int ID of the vertex
+     * @return LinkedList containing all the successors of the given vertex
+     */
+    public LinkedList<T> getSuccessors(int id) {
+        LinkedList<T> newList = new LinkedList<T>();
+        for (int i = this.offsets[id]; i < this.offsets[id + 1]; i++) {
+            newList.add(this.getVertex(this.targets[i]));
+        }
+        return newList;
+    }
+
+    /**
+     * Returns a boolean indicating whether there is a direct connection between the given vertices.
+     *
+     * @param int ID of the first vertex
+     * @param int ID of the second vertex
+     * @return boolean true if an arc exists from the first vertex to the second, false otherwise
+     */
+    public boolean isArc(int id1, int id2) {
+        for (int i = this.offsets[id1]; i < this.offsets[id1 + 1]; i++) {
+            if (this.targets[i] == id2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Does a breadth first search of the graph and records the number of hops to every vertex reached.
+     *
+     * @param int ID of the starting vertex
+     * @param int[] array of length getNumVertices() that receives the distances, -1 for unreached vertices
+     * @return int number of vertices reached, including the starting vertex
+     */
+    public int distancesFrom(int start, int[] dist) {
+        PipelineMetrics.TraversalEvent event = PipelineMetrics.startTraversal();
+        Arrays.fill(dist, -1);
+        int[] q = new int[this.labels.length];
+        int head = 0;
+        int tail = 0;
+
+        q[tail++] = start;
+        dist[start] = 0;
+        while (head < tail) {
+            int current = q[head++];
+            for (int i = this.offsets[current]; i < this.offsets[current + 1]; i++) {
+                int next = this.targets[i];
+                if (dist[next] < 0) {
+                    dist[next] = dist[current] + 1;
+                    q[tail++] = next;
+                }
+            }
+        }
+        PipelineMetrics.endTraversal(event, "csr-distances", tail);
+        return tail;
+    }
+
+    /**
+     * Does a breadth first search of the graph.
+     *
+     * @param int ID of the starting vertex
+     * @return int[] IDs of the searched vertices in the order they were reached
+     */
+    public int[] breadthFirstSearch(int start) {
+        PipelineMetrics.TraversalEvent event = PipelineMetrics.startTraversal();
+        int[] q = new int[this.labels.length];
+        boolean[] marked = new boolean[this.labels.length];
+        int head = 0;
+        int tail = 0;
+
+        q[tail++] = start;
+        marked[start] = true;
+        while (head < tail) {
+            int current = q[head++];
+            for (int i = this.offsets[current]; i < this.offsets[current + 1]; i++) {
+                int next = this.targets[i];
+                if (!marked[next]) {
+                    marked[next] = true;
+                    q[tail++] = next;
+                }
+            }
+        }
+        PipelineMetrics.endTraversal(event, "csr-bfs", tail);
+        return Arrays.copyOf(q, tail);
+    }
+
+    /**
+     * Finds a path with the fewest arcs between two vertices. The search stops as soon as the end is reached.
+     *
+     * @param int ID of the starting vertex
+     * @param int ID of the end vertex
+     * @return int[] IDs of the vertices on the path from start to end, or an empty array if there is none
+     */
+    public int[] shortestPath(int start, int end) {
+        PipelineMetrics.TraversalEvent event = PipelineMetrics.startTraversal();
+        int[] parent = new int[this.labels.length];
+        Arrays.fill(parent, -1);
+        int[] q = new int[this.labels.length];
+        int head = 0;
+        int tail = 0;
+
+        q[tail++] = start;
+        parent[start] = start;
+        while (head < tail && parent[end] < 0) {
+            int current = q[head++];
+            for (int i = this.offsets[current]; i < this.offsets[current + 1]; i++) {
+                int next = this.targets[i];
+                if (parent[next] < 0) {
+                    parent[next] = current;
+                    q[tail++] = next;
+                }
+            }
+        }
+        PipelineMetrics.endTraversal(event, "csr-path", tail);
+        if (parent[end] < 0) {
+            return new int[0];
+        }
+
+        IntList path = new IntList();
+        for (int v = end; v != start; v = parent[v]) {
+            path.add(v);
+        }
+        path.add(start);
+        int[] result = path.toArray();
+        for (int i = 0, j = result.length - 1; i < j; i++, j--) {
+            int swap = result[i];
+            result[i] = result[j];
+            result[j] = swap;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new CSRGraph with every arc reversed, so the successors of a vertex in the result are its
+     * predecessors in this graph.
+     *
+     * @return CSRGraph<T> transpose of this graph
+     */
+    public CSRGraph<T> transpose() {
+        int n = this.labels.length;
+        int[] newOffsets = new int[n + 1];
+        for (int i = 0; i < this.targets.length; i++) {
+            newOffsets[this.targets[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            newOffsets[v + 1] += newOffsets[v];
+        }
+        int[] fill = Arrays.copyOf(newOffsets, n);
+        int[] newTargets = new int[this.targets.length];
+        for (int v = 0; v < n; v++) {
+            for (int i = this.offsets[v]; i < this.offsets[v + 1]; i++) {
+                newTargets[fill[this.targets[i]]++] = v;
+            }
+        }
+        return new CSRGraph<T>(this.labels, newOffsets, newTargets);
+    }
+
+    /**
+     * Returns a string representation of this graph.
+     *
+     * @return String formatted respresentation of the graph components.
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder("***Vertices***\n");
+        s.append(Arrays.toString(this.labels));
+        s.append("\n***Edges***\n");
+        for (int v = 0; v < this.labels.length; v++) {
+            s.append("from ").append(this.labels[v]).append(": ").append(this.getSuccessors(v)).append("\n");
+        }
+        return s.toString();
+    }
+}
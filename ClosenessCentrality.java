@@ -0,0 +1,325 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * ClosenessCentrality computes the exact closeness of every vertex of a CSRGraph. Sources are searched 64 at
+ * a time in the style of MS-BFS: every vertex carries a 64-bit mask of the sources that have reached it, so
+ * one scan of the arcs advances all 64 breadth first searches by a level. Batches of sources are spread over
+ * a ForkJoinPool. Closeness follows Wasserman and Faust, which scales the inverse average distance by the
+ * share of the graph a vertex reaches, so vertices in small components do not look central.
+ *
+ * ClosenessCentrality.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class ClosenessCentrality {
+
+    private static final int BATCH = 64;  // sources per bitmask word
+
+    // instance variables
+    private final CSRGraph<?> csr;
+    private final ForkJoinPool pool;
+    private long[] distanceSums;
+    private int[] reached;
+
+    /**
+     * Score holds the centrality of one vertex.
+     */
+    public static class Score implements Comparable<Score> {
+
+        // instance variables
+        private final int vertexId;
+        private final Object vertex;
+        private final double closeness;
+        private final double averageDistance;
+        private final double relativeError;
+
+        /**
+         * Constructor creates a Score object and initializes instance variables.
+         *
+         * @param int ID of the vertex
+         * @param Object vertex stored under that ID
+         * @param double closeness of the vertex
+         * @param double average number of hops to the vertices it reaches
+         * @param double relative standard error of the estimate, 0 for exact scores
+         */
+        public Score(int vertexId, Object vertex, double closeness, double averageDistance, double relativeError) {
+            this.vertexId = vertexId;
+            this.vertex = vertex;
+            this.closeness = closeness;
+            this.averageDistance = averageDistance;
+            this.relativeError = relativeError;
+        }
+
+        /**
+         * Getter method for obtaining the ID of the vertex.
+         *
+         * @return int ID of the vertex
+         */
+        public int getVertexId() {
+            return this.vertexId;
+        }
+
+        /**
+         * Getter method for obtaining the vertex.
+         *
+         * @return Object vertex stored under the ID
+         */
+        public Object getVertex() {
+            return this.vertex;
+        }
+
+        /**
+         * Getter method for obtaining the closeness of the vertex.
+         *
+         * @return double closeness between 0 and 1
+         */
+        public double getCloseness() {
+            return this.closeness;
+        }
+
+        /**
+         * Getter method for obtaining the average distance from the vertex.
+         *
+         * @return double average number of hops to the vertices it reaches
+         */
+        public double getAverageDistance() {
+            return this.averageDistance;
+        }
+
+        /**
+         * Getter method for obtaining the relative error of the score.
+         *
+         * @return double relative standard error, 0 for exact scores
+         */
+        public double getRelativeError() {
+            return this.relativeError;
+        }
+
+        /**
+         * Orders scores by closeness, breaking ties by the lower vertex ID.
+         */
+        public int compareTo(Score other) {
+            int byCloseness = Double.compare(this.closeness, other.closeness);
+            return byCloseness != 0 ? byCloseness : Integer.compare(other.vertexId, this.vertexId);
+        }
+
+        /**
+         * Returns a string representation of this score.
+         *
+         * @return String vertex with its closeness and average distance
+         */
+        public String toString() {
+            String s = this.vertex + " (closeness " + String.format("%.4f", this.closeness)
+                + ", average distance " + String.format("%.2f", this.averageDistance);
+            if (this.relativeError > 0) {
+                s += String.format(", +/- %.1f%%", this.relativeError * 100);
+            }
+            return s + ")";
+        }
+    }
+
+    /**
+     * Constructor creates a ClosenessCentrality that runs on the common ForkJoinPool.
+     *
+     * @param CSRGraph graph to be measured
+     */
+    public ClosenessCentrality(CSRGraph<?> csr) {
+        this(csr, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor creates a ClosenessCentrality that runs on the given pool.
+     *
+     * @param CSRGraph graph to be measured
+     * @param ForkJoinPool pool that runs the batches of sources
+     */
+    public ClosenessCentrality(CSRGraph<?> csr, ForkJoinPool pool) {
+        this.csr = csr;
+        this.pool = pool;
+    }
+
+    /**
+     * Runs the searches from every vertex. Later calls return straight away.
+     */
+    public synchronized void compute() {
+        if (this.distanceSums != null) {
+            return;
+        }
+        int n = this.csr.getNumVertices();
+        long[] sums = new long[n];
+        int[] counts = new int[n];
+        int numBatches = (n + BATCH - 1) / BATCH;
+        ThreadLocal<long[][]> scratch = ThreadLocal.withInitial(() -> new long[3][n]);
+
+        this.pool.submit(() -> IntStream.range(0, numBatches).parallel()
+            .forEach(b -> this.searchBatch(b * BATCH, Math.min(n, (b + 1) * BATCH), scratch.get(), sums, counts)))
+            .join();
+        this.distanceSums = sums;
+        this.reached = counts;
+    }
+
+    /**
+     * Searches from the sources in [first, last) together and adds their distance sums and reach counts.
+     */
+    private void searchBatch(int first, int last, long[][] arrays, long[] sums, int[] counts) {
+        int[] offsets = this.csr.getOffsets();
+        int[] targets = this.csr.getTargets();
+        long[] seen = arrays[0];
+        long[] visit = arrays[1];
+        long[] visitNext = arrays[2];
+        Arrays.fill(seen, 0);
+        Arrays.fill(visit, 0);
+        Arrays.fill(visitNext, 0);
+
+        for (int s = first; s < last; s++) {
+            seen[s] |= 1L << (s - first);
+            visit[s] |= 1L << (s - first);
+            counts[s] = 1;
+        }
+
+        boolean active = true;
+        for (int level = 1; active; level++) {
+            for (int v = 0; v < visit.length; v++) {
+                long bits = visit[v];
+                if (bits != 0) {
+                    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                        visitNext[targets[i]] |= bits;
+                    }
+                }
+            }
+
+            active = false;
+            for (int w = 0; w < visit.length; w++) {
+                long newBits = visitNext[w] & ~seen[w];
+                visitNext[w] = 0;
+                visit[w] = newBits;
+                if (newBits != 0) {
+                    active = true;
+                    seen[w] |= newBits;
+                    while (newBits != 0) {  // credit this level to every source that just reached w
+                        int s = first + Long.numberOfTrailingZeros(newBits);
+                        sums[s] += level;
+                        counts[s]++;
+                        newBits &= newBits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the closeness of the given vertex.
+     *
+     * @param int ID of the vertex
+     * @return double closeness between 0 and 1, or 0 for a vertex that reaches nothing
+     */
+    public double getCloseness(int v) {
+        this.compute();
+        int n = this.csr.getNumVertices();
+        if (this.reached[v] <= 1 || n <= 1) {
+            return 0;
+        }
+        double others = this.reached[v] - 1;
+        return (others / (n - 1)) * (others / this.distanceSums[v]);
+    }
+
+    /**
+     * Returns the average number of hops from the given vertex to the vertices it reaches.
+     *
+     * @param int ID of the vertex
+     * @return double average distance, or 0 for a vertex that reaches nothing
+     */
+    public double getAverageDistance(int v) {
+        this.compute();
+        return this.reached[v] <= 1 ? 0 : (double) this.distanceSums[v] / (this.reached[v] - 1);
+    }
+
+    /**
+     * Returns the k most central vertices.
+     *
+     * @param int number of vertices wanted
+     * @return List of Scores from most to least central
+     */
+    public List<Score> topK(int k) {
+        return this.topK(k, v -> true);
+    }
+
+    /**
+     * Returns the k most central vertices among those accepted by the given filter.
+     *
+     * @param int number of vertices wanted
+     * @param IntPredicate filter on vertex IDs, such as users only or stories only
+     * @return List of Scores from most to least central
+     */
+    public List<Score> topK(int k, IntPredicate filter) {
+        this.compute();
+        PriorityQueue<Score> best = new PriorityQueue<Score>();
+        for (int v = 0; v < this.csr.getNumVertices(); v++) {
+            if (filter.test(v)) {
+                best.add(new Score(v, this.csr.getVertex(v), this.getCloseness(v), this.getAverageDistance(v), 0));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+        }
+        ArrayList<Score> result = new ArrayList<Score>(best);
+        result.sort((a, b) -> b.compareTo(a));
+        return result;
+    }
+
+    /**
+     * Main method checks every score of a generated graph, several batches of sources wide, against a plain
+     * breadth first search from each vertex.
+     */
+    public static void main(String[] args) throws IOException {
+        File dataFile = File.createTempFile("closeness", ".tsv");
+        dataFile.deleteOnExit();
+        new BotNetworkGenerator(400, 300, 800, 1.1, 3).write(dataFile.getPath());
+        TweeterCollection tc = new TweeterCollection(dataFile.getPath(), 1);
+        tc.appendRow("loner", "3000001", 1, 1, Collections.singletonList("unshared"));  // a component of its own
+        CSRGraph<String> csr = tc.getSnapshot();
+        ClosenessCentrality centrality = new ClosenessCentrality(csr, new ForkJoinPool(4));
+
+        int n = csr.getNumVertices();
+        int[] dist = new int[n];
+        double[] expected = new double[n];
+        int wrongCloseness = 0;
+        int wrongDistance = 0;
+        for (int v = 0; v < n; v++) {
+            int reached = csr.distancesFrom(v, dist);
+            long sum = 0;
+            for (int d : dist) {
+                sum += Math.max(d, 0);
+            }
+            double others = reached - 1;
+            expected[v] = reached <= 1 ? 0 : (others / (n - 1)) * (others / sum);
+            double average = reached <= 1 ? 0 : (double) sum / others;
+            wrongCloseness += Math.abs(centrality.getCloseness(v) - expected[v]) > 1e-12 ? 1 : 0;
+            wrongDistance += Math.abs(centrality.getAverageDistance(v) - average) > 1e-12 ? 1 : 0;
+        }
+        System.out.println("Vertices: \nExpected: more than " + BATCH + " \nGot:" + n);
+        System.out.println("\nClosenesses that differ from a plain search: \nExpected: 0 \nGot:" + wrongCloseness);
+        System.out.println("\nAverage distances that differ from a plain search: \nExpected: 0 \nGot:" + wrongDistance);
+
+        Arrays.sort(expected);
+        List<Score> top = centrality.topK(5);
+        boolean sameTop = top.size() == 5;
+        for (int i = 0; sameTop && i < 5; i++) {
+            sameTop = top.get(i).getCloseness() == expected[n - 1 - i];
+        }
+        System.out.println("\ntopK(5) has the five highest closenesses, in order: \nExpected: true \nGot:" + sameTop);
+        System.out.println("\ngetCloseness() of the loner: \nExpected: " + (1.0 / (n - 1)) + " \nGot:"
+            + centrality.getCloseness(csr.getVertexId("loner")));
+    }
+}
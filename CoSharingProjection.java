@@ -0,0 +1,259 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * CoSharingProjection projects the bipartite graph of users and stories onto the users, joining two users
+ * when they shared the same stories and weighting the edge by how many stories they have in common. In
+ * matrix terms it computes A * A^T for the user-story incidence matrix A, one row of the product at a time:
+ * the stories of user u are walked, every other user of those stories is counted in a dense accumulator,
+ * and the counts that reach the minimum weight become the row. Blocks of users are spread over a
+ * ForkJoinPool, and every thread keeps its own accumulator.
+ *
+ * A story shared by d users adds d * d entries to the product, so a single viral story can dominate the
+ * cost and the output. Stories with more users than the fan-out cap are left out of the projection.
+ *
+ * CoSharingProjection.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class CoSharingProjection {
+
+    private static final int BLOCK = 256;  // users per parallel task
+
+    // instance variables
+    private final CSRGraph<String> bipartite;
+    private final int numUsers;
+    private final ForkJoinPool pool;
+
+    /**
+     * Result holds the projected user-user graph and the weight of each of its arcs.
+     */
+    public static class Result {
+
+        // instance variables
+        private final CSRGraph<String> graph;
+        private final int[] weights;
+
+        /**
+         * Constructor creates a Result object and initializes instance variables.
+         *
+         * @param CSRGraph<String> projected graph of users
+         * @param int[] weight of each arc, in the order of the graph's targets array
+         */
+        Result(CSRGraph<String> graph, int[] weights) {
+            this.graph = graph;
+            this.weights = weights;
+        }
+
+        /**
+         * Getter method for obtaining the projected graph. User IDs are the same as in the bipartite graph,
+         * and there is an arc in each direction for every pair of users that co-shared stories.
+         *
+         * @return CSRGraph<String> graph of users labelled by screen name
+         */
+        public CSRGraph<String> getGraph() {
+            return this.graph;
+        }
+
+        /**
+         * Getter method for obtaining the weights array. The array is shared and must not be modified.
+         *
+         * @return int[] number of shared stories of each arc, aligned with getGraph().getTargets()
+         */
+        public int[] getWeights() {
+            return this.weights;
+        }
+
+        /**
+         * Returns the number of stories two users both shared.
+         *
+         * @param int ID of the first user
+         * @param int ID of the second user
+         * @return int weight of the edge, or 0 if the users are not joined in the projection
+         */
+        public int getWeight(int user1, int user2) {
+            int[] offsets = this.graph.getOffsets();
+            int[] targets = this.graph.getTargets();
+            int i = Arrays.binarySearch(targets, offsets[user1], offsets[user1 + 1], user2);
+            return i >= 0 ? this.weights[i] : 0;
+        }
+
+        /**
+         * Builds an AdjListsGraph of the projection, for code that needs the Graph interface.
+         * Weights are not kept.
+         *
+         * @return AdjListsGraph<String> of users
+         */
+        public AdjListsGraph<String> toAdjListsGraph() {
+            AdjListsGraph<String> g = new AdjListsGraph<String>();
+            int[] offsets = this.graph.getOffsets();
+            int[] targets = this.graph.getTargets();
+            for (int u = 0; u < this.graph.getNumVertices(); u++) {
+                g.addVertex(this.graph.getVertex(u));
+            }
+            for (int u = 0; u < this.graph.getNumVertices(); u++) {
+                for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                    g.addArc(this.graph.getVertex(u), this.graph.getVertex(targets[i]));
+                }
+            }
+            return g;
+        }
+    }
+
+    /**
+     * Constructor creates a CoSharingProjection that runs on the common ForkJoinPool.
+     *
+     * @param CSRGraph<String> graph of users and stories, users first, as built by BipartiteGraph.freeze()
+     * @param int number of users at the start of the graph
+     */
+    public CoSharingProjection(CSRGraph<String> bipartite, int numUsers) {
+        this(bipartite, numUsers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor creates a CoSharingProjection that runs on the given pool.
+     *
+     * @param CSRGraph<String> graph of users and stories, users first, as built by BipartiteGraph.freeze()
+     * @param int number of users at the start of the graph
+     * @param ForkJoinPool pool that runs the blocks of users
+     */
+    public CoSharingProjection(CSRGraph<String> bipartite, int numUsers, ForkJoinPool pool) {
+        this.bipartite = bipartite;
+        this.numUsers = numUsers;
+        this.pool = pool;
+    }
+
+    /**
+     * Builds the weighted user-user graph.
+     *
+     * @param int fewest shared stories for two users to be joined, at least 1
+     * @param int most users a story may have to be counted, or 0 for no cap
+     * @return Result with the projected graph and its weights
+     */
+    public Result project(int minWeight, int maxFanOut) {
+        int threshold = Math.max(minWeight, 1);
+        int cap = maxFanOut > 0 ? maxFanOut : Integer.MAX_VALUE;
+        int[][] rowTargets = new int[this.numUsers][];
+        int[][] rowWeights = new int[this.numUsers][];
+        int numBlocks = (this.numUsers + BLOCK - 1) / BLOCK;
+        ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[2][this.numUsers]);
+
+        this.pool.submit(() -> IntStream.range(0, numBlocks).parallel().forEach(b -> {
+            int[][] arrays = scratch.get();
+            for (int u = b * BLOCK; u < Math.min(this.numUsers, (b + 1) * BLOCK); u++) {
+                this.projectRow(u, threshold, cap, arrays[0], arrays[1], rowTargets, rowWeights);
+            }
+        })).join();
+
+        int[] offsets = new int[this.numUsers + 1];
+        for (int u = 0; u < this.numUsers; u++) {
+            offsets[u + 1] = offsets[u] + rowTargets[u].length;
+        }
+        int[] targets = new int[offsets[this.numUsers]];
+        int[] weights = new int[targets.length];
+        Object[] labels = new Object[this.numUsers];
+        for (int u = 0; u < this.numUsers; u++) {
+            System.arraycopy(rowTargets[u], 0, targets, offsets[u], rowTargets[u].length);
+            System.arraycopy(rowWeights[u], 0, weights, offsets[u], rowWeights[u].length);
+            rowTargets[u] = null;
+            rowWeights[u] = null;
+            labels[u] = this.bipartite.getVertex(u);
+        }
+        return new Result(new CSRGraph<String>(labels, offsets, targets), weights);
+    }
+
+    /**
+     * Counts the stories user u shares with every other user and keeps the counts that reach the
+     * threshold, sorted by user ID. The accumulator is left all zero again.
+     */
+    private void projectRow(int u, int threshold, int cap, int[] count, int[] touched,
+                            int[][] rowTargets, int[][] rowWeights) {
+        int[] offsets = this.bipartite.getOffsets();
+        int[] targets = this.bipartite.getTargets();
+        int numTouched = 0;
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            int story = targets[i];
+            if (offsets[story + 1] - offsets[story] > cap) {
+                continue;
+            }
+            for (int j = offsets[story]; j < offsets[story + 1]; j++) {
+                int w = targets[j];
+                if (w != u && count[w]++ == 0) {
+                    touched[numTouched++] = w;
+                }
+            }
+        }
+
+        Arrays.sort(touched, 0, numTouched);
+        int kept = 0;
+        for (int k = 0; k < numTouched; k++) {
+            if (count[touched[k]] >= threshold) {
+                kept++;
+            }
+        }
+        int[] row = new int[kept];
+        int[] weight = new int[kept];
+        kept = 0;
+        for (int k = 0; k < numTouched; k++) {
+            int w = touched[k];
+            if (count[w] >= threshold) {
+                row[kept] = w;
+                weight[kept++] = count[w];
+            }
+            count[w] = 0;
+        }
+        rowTargets[u] = row;
+        rowWeights[u] = weight;
+    }
+
+    /**
+     * Main method checks projections of a small generated graph, with and without a fan-out cap, against
+     * a dense A * A^T computed one pair of users at a time.
+     */
+    public static void main(String[] args) throws IOException {
+        File dataFile = File.createTempFile("cosharing", ".tsv");
+        dataFile.deleteOnExit();
+        new BotNetworkGenerator(600, 200, 3000, 1.1, 4).write(dataFile.getPath());  // more than two blocks of users
+        TweeterCollection tc = new TweeterCollection(dataFile.getPath(), 1);
+        BipartiteGraph bipartite = tc.getBipartiteGraph();
+        int numUsers = bipartite.getNumUsers();
+        CoSharingProjection projection = new CoSharingProjection(tc.getSnapshot(), numUsers, new ForkJoinPool(4));
+
+        boolean[][] shared = new boolean[numUsers][bipartite.getNumStories()];
+        for (int u = 0; u < numUsers; u++) {
+            for (int story : bipartite.getStoriesOf(u)) {
+                shared[u][story] = true;
+            }
+        }
+        int[][] settings = {{1, 0}, {2, 0}, {1, 10}, {3, 20}};
+        String gap = "";
+        for (int[] setting : settings) {
+            int minWeight = setting[0];
+            int cap = setting[1] > 0 ? setting[1] : Integer.MAX_VALUE;
+            Result result = projection.project(minWeight, setting[1]);
+            int arcs = 0;
+            int wrong = 0;
+            for (int u = 0; u < numUsers; u++) {
+                for (int v = 0; v < numUsers; v++) {
+                    int weight = 0;
+                    for (int s = 0; u != v && s < shared[u].length; s++) {
+                        if (shared[u][s] && shared[v][s] && bipartite.getStoryDegree(s) <= cap) {
+                            weight++;
+                        }
+                    }
+                    weight = weight >= minWeight ? weight : 0;
+                    arcs += weight > 0 ? 1 : 0;
+                    wrong += result.getWeight(u, v) != weight ? 1 : 0;
+                }
+            }
+            System.out.println(gap + "project(" + minWeight + ", " + setting[1] + "): \nExpected: " + arcs
+                + " arcs, 0 wrong weights \nGot:" + result.getGraph().getNumArcs() + " arcs, " + wrong + " wrong weights");
+            gap = "\n";
+        }
+    }
+}
@@ -0,0 +1,397 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ConcurrentGraph is a graph that several threads can load at once while other threads query it. Writers
+ * only add vertices and arcs. The arcs leaving a vertex are appended under one of 64 striped locks chosen
+ * by the start vertex, so writers on different vertices rarely wait for each other. Vertices live in
+ * segments of 4096 that never move once created, and looking up a vertex's ID does not lock at all.
+ *
+ * Queries run on a Snapshot: a read-only CSRGraph of every change finished before snapshot() was called,
+ * tagged with the version of the graph it was taken at. Each writer holds the shared side of a read-write
+ * lock for the length of one change, and snapshot() holds the exclusive side only to read the version and
+ * the number of vertices and to start a new snapshot epoch, so an edge is seen in both directions or not at
+ * all. The first writer to touch an arc list in a new epoch saves the list's length first, and the snapshot
+ * reads that saved length for lists changed after it began. The lists are only ever appended to, so the
+ * CSR arrays are filled after the lock is released while writers carry on. Snapshots are cached until the
+ * version changes, and they can be shared with any analysis that takes a CSRGraph.
+ *
+ * TweeterCollection writes every user, story and share it adds into one of these once getLiveGraph() is
+ * called, and QueryService answers its graph queries on the snapshots while rows are appended.
+ *
+ * ConcurrentGraph.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class ConcurrentGraph<T> {
+
+    private static final int SEGMENT_BITS = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int STRIPES = 64;
+
+    /**
+     * Snapshot is a consistent, read-only view of a ConcurrentGraph.
+     */
+    public static class Snapshot<T> {
+
+        // instance variables
+        private final CSRGraph<T> graph;
+        private final long version;
+
+        /**
+         * Constructor creates a Snapshot object and initializes instance variables.
+         *
+         * @param CSRGraph<T> graph at the time of the snapshot
+         * @param long version of the graph it was taken at
+         */
+        public Snapshot(CSRGraph<T> graph, long version) {
+            this.graph = graph;
+            this.version = version;
+        }
+
+        /**
+         * Getter method for obtaining the graph of this snapshot. Vertex IDs match ConcurrentGraph.getVertexId().
+         *
+         * @return CSRGraph<T> of the vertices and arcs added before the snapshot
+         */
+        public CSRGraph<T> getGraph() {
+            return this.graph;
+        }
+
+        /**
+         * Getter method for obtaining the version of the graph this snapshot was taken at.
+         *
+         * @return long number of changes made to the graph before the snapshot
+         */
+        public long getVersion() {
+            return this.version;
+        }
+    }
+
+    /**
+     * Segment holds the labels and arc lists of 4096 consecutive vertex IDs.
+     */
+    private static class Segment {
+        private final Object[] labels = new Object[SEGMENT_SIZE];
+        private final int[][] targets = new int[SEGMENT_SIZE][];
+        private final int[] sizes = new int[SEGMENT_SIZE];
+        private final int[] epochs = new int[SEGMENT_SIZE];  // snapshot epoch each list was last changed in
+        private final int[] frozenSizes = new int[SEGMENT_SIZE];  // size of each list when that epoch began
+    }
+
+    // instance variables
+    private final ConcurrentHashMap<T,Integer> vertexIds;
+    private volatile Segment[] segments;
+    private int numVertices;  // guarded by vertexLock
+    private final Object vertexLock;
+    private final Object[] stripes;
+    private final ReentrantReadWriteLock lock;  // shared by writers, exclusive for snapshot()
+    private final Object snapshotLock;
+    private final LongAdder numArcs;
+    private final LongAdder version;
+    private volatile int epoch;  // changed only under the exclusive lock
+    private volatile Snapshot<T> latest;
+
+    /**
+     * Constructor creates an empty ConcurrentGraph object and initializes instance variables.
+     */
+    public ConcurrentGraph() {
+        this.vertexIds = new ConcurrentHashMap<T,Integer>();
+        this.segments = new Segment[16];
+        this.numVertices = 0;
+        this.vertexLock = new Object();
+        this.stripes = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Object();
+        }
+        this.lock = new ReentrantReadWriteLock();
+        this.snapshotLock = new Object();
+        this.numArcs = new LongAdder();
+        this.version = new LongAdder();
+    }
+
+    /**
+     * Getter method for obtaining the number of vertices. While writers are running, the count can be
+     * behind by the vertices being added at that moment.
+     *
+     * @return int total number of vertices
+     */
+    public int getNumVertices() {
+        synchronized (this.vertexLock) {
+            return this.numVertices;
+        }
+    }
+
+    /**
+     * Getter method for obtaining the number of arcs. While writers are running, the count can be
+     * behind by the arcs being added at that moment.
+     *
+     * @return int total number of arcs
+     */
+    public int getNumArcs() {
+        return this.numArcs.intValue();
+    }
+
+    /**
+     * Getter method for obtaining the version of this graph, the number of changes made to it so far.
+     *
+     * @return long version of the graph
+     */
+    public long getVersion() {
+        return this.version.sum();
+    }
+
+    /**
+     * Returns the ID of the given vertex. IDs are dense from 0 in the order vertices were added.
+     *
+     * @param T given vertex
+     * @return int ID of the vertex, or -1 if the vertex is not in this graph
+     */
+    public int getVertexId(T vertex) {
+        Integer id = this.vertexIds.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Adds the given vertex to this graph.
+     * If the given vertex already exists, the graph does not change.
+     *
+     * @param T vertex to be added
+     * @return int ID of the vertex
+     */
+    public int addVertex(T vertex) {
+        Integer id = this.vertexIds.get(vertex);
+        if (id != null) {
+            return id;
+        }
+        this.lock.readLock().lock();
+        try {
+            synchronized (this.vertexLock) {
+                id = this.vertexIds.get(vertex);
+                if (id != null) {
+                    return id;
+                }
+                int newId = this.numVertices;
+                int s = newId >>> SEGMENT_BITS;
+                if (s == this.segments.length) {
+                    Segment[] grown = new Segment[s * 2];
+                    System.arraycopy(this.segments, 0, grown, 0, s);
+                    this.segments = grown;
+                }
+                if (this.segments[s] == null) {
+                    this.segments[s] = new Segment();
+                }
+                this.segments[s].labels[newId & SEGMENT_MASK] = vertex;
+                this.numVertices++;
+                this.vertexIds.put(vertex, newId);  // published last, so writers never see a missing segment
+                this.version.increment();
+                return newId;
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts an arc between two given vertices of this graph.
+     * If at least one of the vertices does not exist, the graph is not changed.
+     *
+     * @param T start vertex of the arc
+     * @param T end vertex of the arc
+     */
+    public void addArc(T vertex1, T vertex2) {
+        int id1 = this.getVertexId(vertex1);
+        int id2 = this.getVertexId(vertex2);
+        if (id1 >= 0 && id2 >= 0) {
+            this.lock.readLock().lock();
+            try {
+                this.append(id1, id2);
+                this.numArcs.increment();
+                this.version.increment();
+            } finally {
+                this.lock.readLock().unlock();
+            }
+            PipelineMetrics.add(PipelineMetrics.Counter.EDGES_ADDED, 1);
+        }
+    }
+
+    /**
+     * Inserts an edge between the two given vertices of this graph. A snapshot sees either both of its
+     * arcs or neither. If at least one of the vertices does not exist, the graph is not changed.
+     *
+     * @param T start vertex of the edge
+     * @param T end vertex of the edge
+     */
+    public void addEdge(T vertex1, T vertex2) {
+        int id1 = this.getVertexId(vertex1);
+        int id2 = this.getVertexId(vertex2);
+        if (id1 >= 0 && id2 >= 0) {
+            this.lock.readLock().lock();
+            try {
+                this.append(id1, id2);
+                this.append(id2, id1);
+                this.numArcs.add(2);
+                this.version.increment();
+            } finally {
+                this.lock.readLock().unlock();
+            }
+            PipelineMetrics.add(PipelineMetrics.Counter.EDGES_ADDED, 2);
+        }
+    }
+
+    /**
+     * Appends an arc to the list of its start vertex under that vertex's stripe lock, first saving the
+     * length of the list if this is its first change since the last snapshot began.
+     */
+    private void append(int from, int to) {
+        Segment segment = this.segments[from >>> SEGMENT_BITS];
+        int i = from & SEGMENT_MASK;
+        int current = this.epoch;
+        synchronized (this.stripes[from & (STRIPES - 1)]) {
+            int[] list = segment.targets[i];
+            int size = segment.sizes[i];
+            if (segment.epochs[i] != current) {
+                segment.epochs[i] = current;
+                segment.frozenSizes[i] = size;
+            }
+            if (list == null) {
+                list = new int[4];
+                segment.targets[i] = list;
+            } else if (size == list.length) {
+                int[] grown = new int[size * 2];  // readers of a snapshot keep the old array, whose prefix never changes
+                System.arraycopy(list, 0, grown, 0, size);
+                list = grown;
+                segment.targets[i] = list;
+            }
+            list[size] = to;
+            segment.sizes[i] = size + 1;
+        }
+    }
+
+    /**
+     * Returns a consistent view of every vertex and arc added so far. Writers are held off only while the
+     * version and the number of vertices are read, and the view is cached until the next change.
+     *
+     * @return Snapshot of this graph
+     */
+    public Snapshot<T> snapshot() {
+        Snapshot<T> current = this.latest;
+        if (current != null && current.getVersion() == this.version.sum()) {
+            return current;
+        }
+        synchronized (this.snapshotLock) {  // one snapshot is built at a time
+            current = this.latest;
+            if (current != null && current.getVersion() == this.version.sum()) {
+                return current;
+            }
+
+            int n;
+            long at;
+            int started;
+            this.lock.writeLock().lock();
+            try {
+                at = this.version.sum();
+                n = this.numVertices;
+                started = this.epoch + 1;
+                this.epoch = started;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+
+            // lists changed since the epoch began report the length they had when it began
+            Object[] labels = new Object[n];
+            int[][] lists = new int[n][];
+            int[] sizes = new int[n];
+            Segment[] live = this.segments;
+            for (int v = 0; v < n; v++) {
+                Segment segment = live[v >>> SEGMENT_BITS];
+                int i = v & SEGMENT_MASK;
+                labels[v] = segment.labels[i];
+                synchronized (this.stripes[v & (STRIPES - 1)]) {
+                    lists[v] = segment.targets[i];
+                    sizes[v] = segment.epochs[i] == started ? segment.frozenSizes[i] : segment.sizes[i];
+                }
+            }
+
+            int[] offsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] = offsets[v] + sizes[v];
+            }
+            int[] targets = new int[offsets[n]];
+            for (int v = 0; v < n; v++) {
+                if (sizes[v] > 0) {
+                    System.arraycopy(lists[v], 0, targets, offsets[v], sizes[v]);
+                }
+            }
+            current = new Snapshot<T>(new CSRGraph<T>(labels, offsets, targets), at);
+            this.latest = current;
+            return current;
+        }
+    }
+
+    /**
+     * Returns a read-only CSRGraph of every vertex and arc added so far, see snapshot().
+     *
+     * @return CSRGraph<T> compressed sparse row snapshot of this graph
+     */
+    public CSRGraph<T> toCSR() {
+        return this.snapshot().getGraph();
+    }
+
+    /**
+     * Main method for testing.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("***Test Concurrent Graph***");
+        ConcurrentGraph<String> g = new ConcurrentGraph<String>();
+        int threads = 4;
+        int perThread = 50000;
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t * perThread;
+            writers[t] = new Thread(() -> {
+                for (int i = first; i < first + perThread; i++) {
+                    g.addVertex("u" + i);
+                    g.addVertex("s" + (i % 1000));  // stories are shared by every thread
+                    g.addEdge("u" + i, "s" + (i % 1000));
+                }
+            });
+            writers[t].start();
+        }
+
+        int snapshots = 0;
+        boolean consistent = true;
+        boolean writing = true;
+        while (writing || snapshots == 0) {
+            writing = false;
+            for (Thread writer : writers) {
+                writing |= writer.isAlive();
+            }
+            CSRGraph<String> csr = g.toCSR();
+            for (int v = 0; v < csr.getNumVertices(); v++) {
+                if (csr.getVertex(v).startsWith("u") && csr.getOutDegree(v) > 0) {
+                    int story = csr.getTargets()[csr.getOffsets()[v]];
+                    consistent &= csr.isArc(story, v);  // both arcs of an edge or neither
+                }
+            }
+            snapshots++;
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        CSRGraph<String> last = g.toCSR();
+        System.out.println("Snapshots taken during the load: " + snapshots);
+        System.out.println("every edge seen in both directions: \nExpected: true \nGot:" + consistent);
+        System.out.println("\ngetNumVertices(): \nExpected: 201000 \nGot:" + last.getNumVertices());
+        System.out.println("\ngetNumArcs(): \nExpected: 400000 \nGot:" + last.getNumArcs());
+        System.out.println("\nsnapshot() cached until the next change: \nExpected: true \nGot:" + (g.snapshot() == g.snapshot()));
+        g.addVertex("late");
+        System.out.println("\ngetVersion() after a change: \nExpected: true \nGot:" + (g.snapshot().getVersion() > 0
+            && g.snapshot().getGraph().getVertexId("late") == 201000));
+    }
+}
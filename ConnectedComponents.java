@@ -0,0 +1,271 @@
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * ConnectedComponents tracks the connected components of a graph with a union-find structure over dense
+ * vertex IDs. Components can be built while a graph is being read in, by calling union() for every edge,
+ * or all at once from a CSRGraph. Every operation runs in near-constant amortized time, and a histogram of
+ * component sizes is kept up to date so the largest and smallest components are known without a search.
+ * Arcs are treated as edges, so for a directed graph the result is its weakly connected components.
+ *
+ * ConnectedComponents.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class ConnectedComponents {
+
+    // instance variables
+    private int[] parent;
+    private int[] size;
+    private int numVertices;
+    private int numComponents;
+    private TreeMap<Integer,Integer> sizeCounts;  // component size -> number of components of that size
+
+    /**
+     * Constructor creates a ConnectedComponents object with no vertices.
+     */
+    public ConnectedComponents() {
+        this(16);
+    }
+
+    /**
+     * Constructor creates a ConnectedComponents object with no vertices and room for the given number of them.
+     *
+     * @param int initial capacity
+     */
+    public ConnectedComponents(int capacity) {
+        this.parent = new int[Math.max(capacity, 1)];
+        this.size = new int[Math.max(capacity, 1)];
+        this.numVertices = 0;
+        this.numComponents = 0;
+        this.sizeCounts = new TreeMap<Integer,Integer>();
+    }
+
+    /**
+     * Builds the components of the given graph in a single pass over its arcs.
+     *
+     * @param CSRGraph graph to be split into components
+     * @return ConnectedComponents of the graph
+     */
+    public static ConnectedComponents of(CSRGraph<?> csr) {
+        ConnectedComponents cc = new ConnectedComponents(csr.getNumVertices());
+        cc.ensureVertices(csr.getNumVertices());
+        int[] offsets = csr.getOffsets();
+        int[] targets = csr.getTargets();
+        for (int v = 0; v < csr.getNumVertices(); v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                cc.union(v, targets[i]);
+            }
+        }
+        return cc;
+    }
+
+    /**
+     * Adds a new vertex in a component of its own.
+     *
+     * @return int ID of the new vertex
+     */
+    public int addVertex() {
+        if (this.numVertices == this.parent.length) {
+            this.parent = Arrays.copyOf(this.parent, this.parent.length * 2);
+            this.size = Arrays.copyOf(this.size, this.size.length * 2);
+        }
+        int id = this.numVertices++;
+        this.parent[id] = id;
+        this.size[id] = 1;
+        this.numComponents++;
+        this.sizeCounts.merge(1, 1, Integer::sum);
+        return id;
+    }
+
+    /**
+     * Adds single-vertex components until there are at least the given number of vertices.
+     *
+     * @param int number of vertices needed
+     */
+    public void ensureVertices(int n) {
+        while (this.numVertices < n) {
+            this.addVertex();
+        }
+    }
+
+    /**
+     * Returns the representative of the component containing the given vertex. Paths are halved on the
+     * way up, so repeated calls stay close to constant time.
+     *
+     * @param int ID of the vertex
+     * @return int ID of the representative vertex of its component
+     */
+    public int find(int v) {
+        while (this.parent[v] != v) {
+            this.parent[v] = this.parent[this.parent[v]];
+            v = this.parent[v];
+        }
+        return v;
+    }
+
+    /**
+     * Merges the components of the two given vertices.
+     *
+     * @param int ID of the first vertex
+     * @param int ID of the second vertex
+     * @return boolean true if two different components were merged, false if they were already the same
+     */
+    public boolean union(int v1, int v2) {
+        int root1 = this.find(v1);
+        int root2 = this.find(v2);
+        if (root1 == root2) {
+            return false;
+        }
+        if (this.size[root1] < this.size[root2]) {  // hang the smaller tree under the larger one
+            int temp = root1;
+            root1 = root2;
+            root2 = temp;
+        }
+        this.removeSize(this.size[root1]);
+        this.removeSize(this.size[root2]);
+        this.parent[root2] = root1;
+        this.size[root1] += this.size[root2];
+        this.sizeCounts.merge(this.size[root1], 1, Integer::sum);
+        this.numComponents--;
+        return true;
+    }
+
+    /**
+     * Removes one component of the given size from the histogram.
+     */
+    private void removeSize(int componentSize) {
+        int count = this.sizeCounts.get(componentSize);
+        if (count == 1) {
+            this.sizeCounts.remove(componentSize);
+        } else {
+            this.sizeCounts.put(componentSize, count - 1);
+        }
+    }
+
+    /**
+     * Returns a boolean indicating whether the two given vertices are in the same component.
+     *
+     * @param int ID of the first vertex
+     * @param int ID of the second vertex
+     * @return boolean true if the vertices are connected, false otherwise
+     */
+    public boolean isConnected(int v1, int v2) {
+        return this.find(v1) == this.find(v2);
+    }
+
+    /**
+     * Returns a boolean indicating whether every vertex is in a single component.
+     *
+     * @return boolean true if there is at most one component, false otherwise
+     */
+    public boolean isConnected() {
+        return this.numComponents <= 1;
+    }
+
+    /**
+     * Getter method for obtaining the number of vertices.
+     *
+     * @return int total number of vertices
+     */
+    public int getNumVertices() {
+        return this.numVertices;
+    }
+
+    /**
+     * Getter method for obtaining the number of components.
+     *
+     * @return int total number of components
+     */
+    public int getNumComponents() {
+        return this.numComponents;
+    }
+
+    /**
+     * Returns the size of the component containing the given vertex.
+     *
+     * @param int ID of the vertex
+     * @return int number of vertices in its component
+     */
+    public int getComponentSize(int v) {
+        return this.size[this.find(v)];
+    }
+
+    /**
+     * Getter method for obtaining the size of the largest connected component.
+     *
+     * @return int size of the LCC, or 0 if there are no vertices
+     */
+    public int getLargestSize() {
+        return this.sizeCounts.isEmpty() ? 0 : this.sizeCounts.lastKey();
+    }
+
+    /**
+     * Getter method for obtaining the size of the smallest connected component.
+     *
+     * @return int size of the smallest component, or 0 if there are no vertices
+     */
+    public int getSmallestSize() {
+        return this.sizeCounts.isEmpty() ? 0 : this.sizeCounts.firstKey();
+    }
+
+    /**
+     * Getter method for obtaining how many components there are of each size.
+     *
+     * @return TreeMap from component size to the number of components of that size
+     */
+    public TreeMap<Integer,Integer> getSizeHistogram() {
+        return new TreeMap<Integer,Integer>(this.sizeCounts);
+    }
+
+    /**
+     * Labels every vertex with a dense component ID. Components are numbered from 0 in the order of
+     * their lowest vertex ID.
+     *
+     * @return int[] component ID of every vertex
+     */
+    public int[] getComponentIds() {
+        int[] labels = new int[this.numVertices];
+        int[] rootLabel = new int[this.numVertices];
+        Arrays.fill(rootLabel, -1);
+        int next = 0;
+        for (int v = 0; v < this.numVertices; v++) {
+            int root = this.find(v);
+            if (rootLabel[root] < 0) {
+                rootLabel[root] = next++;
+            }
+            labels[v] = rootLabel[root];
+        }
+        return labels;
+    }
+
+    /**
+     * Returns the vertices of the largest connected component.
+     *
+     * @return boolean[] true for every vertex in the LCC
+     */
+    public boolean[] getLargestComponent() {
+        boolean[] inLCC = new boolean[this.numVertices];
+        int best = -1;
+        for (int v = 0; v < this.numVertices && best < 0; v++) {
+            if (this.getComponentSize(v) == this.getLargestSize()) {
+                best = this.find(v);
+            }
+        }
+        for (int v = 0; v < this.numVertices; v++) {
+            inLCC[v] = this.find(v) == best;
+        }
+        return inLCC;
+    }
+
+    /**
+     * Returns a string representation of the component sizes.
+     *
+     * @return String number of components and the size histogram
+     */
+    public String toString() {
+        return this.numComponents + " components, sizes " + this.sizeCounts;
+    }
+}
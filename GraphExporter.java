@@ -0,0 +1,210 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntPredicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GraphExporter writes a CSRGraph to a file as TGF, as a plain edge list, or as GraphML for tools such as yEd.
+ * Every format is written in one pass over the CSR arrays through a buffered writer, so an export takes time
+ * linear in the size of the graph. The output can be gzip-compressed, and a filter can restrict it to the
+ * subgraph induced by some of the vertices, such as the largest connected component. Kept vertices are
+ * numbered again from the start so the output has no gaps.
+ *
+ * GraphExporter.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class GraphExporter {
+
+    /**
+     * Format lists the file formats GraphExporter can write.
+     */
+    public enum Format {
+        TGF,        // "id label" lines, a "#" line, then "from to" lines, with IDs from 1
+        EDGE_LIST,  // "from TAB to" lines, with IDs from 0
+        GRAPHML     // XML with a label attribute on every node
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // instance variables
+    private final CSRGraph<?> graph;
+
+    /**
+     * Constructor creates a GraphExporter for the given graph.
+     *
+     * @param CSRGraph graph to be written out
+     */
+    public GraphExporter(CSRGraph<?> graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Returns a filter that keeps only the vertices of the largest connected component of the given graph.
+     *
+     * @param CSRGraph graph whose components are found
+     * @return IntPredicate true for vertex IDs in the largest component
+     */
+    public static IntPredicate largestComponent(CSRGraph<?> graph) {
+        boolean[] inLargest = ConnectedComponents.of(graph).getLargestComponent();
+        return v -> inLargest[v];
+    }
+
+    /**
+     * Writes the whole graph to a file.
+     *
+     * @param String name of the file to be written out
+     * @param Format file format
+     * @param boolean true to gzip the file
+     * @throws IOException if the file cannot be written
+     */
+    public void export(String fileName, Format format, boolean gzip) throws IOException {
+        this.export(fileName, format, gzip, null);
+    }
+
+    /**
+     * Writes the subgraph induced by the vertices the filter keeps to a file.
+     *
+     * @param String name of the file to be written out
+     * @param Format file format
+     * @param boolean true to gzip the file
+     * @param IntPredicate vertex IDs to be kept, or null to keep every vertex
+     * @throws IOException if the file cannot be written
+     */
+    public void export(String fileName, Format format, boolean gzip, IntPredicate keep) throws IOException {
+        int[] newIds = this.renumber(keep);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream stream = Channels.newOutputStream(channel);
+            if (gzip) {
+                stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+            }
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                if (format == Format.TGF) {
+                    this.writeTGF(writer, newIds);
+                } else if (format == Format.EDGE_LIST) {
+                    this.writeEdges(writer, newIds, 0, "\t");
+                } else {
+                    this.writeGraphML(writer, newIds);
+                }
+            }
+        }
+    }
+
+    /**
+     * Numbers the kept vertices from 0 in ID order.
+     *
+     * @return int[] new ID of every vertex, or -1 for vertices that are left out
+     */
+    private int[] renumber(IntPredicate keep) {
+        int[] newIds = new int[this.graph.getNumVertices()];
+        int count = 0;
+        for (int v = 0; v < newIds.length; v++) {
+            newIds[v] = keep == null || keep.test(v) ? count++ : -1;
+        }
+        return newIds;
+    }
+
+    /**
+     * Writes the vertices and then the arcs in TGF.
+     */
+    private void writeTGF(Writer writer, int[] newIds) throws IOException {
+        for (int v = 0; v < newIds.length; v++) {
+            if (newIds[v] >= 0) {
+                writer.write(Integer.toString(newIds[v] + 1));
+                writer.write(' ');
+                writer.write(String.valueOf(this.graph.getVertex(v)).replace('\n', ' ').replace('\r', ' '));
+                writer.write('\n');
+            }
+        }
+        writer.write("#\n");
+        this.writeEdges(writer, newIds, 1, " ");
+    }
+
+    /**
+     * Writes one line per arc between kept vertices.
+     *
+     * @param int amount added to every ID
+     * @param String separator between the two IDs
+     */
+    private void writeEdges(Writer writer, int[] newIds, int base, String separator) throws IOException {
+        int[] offsets = this.graph.getOffsets();
+        int[] targets = this.graph.getTargets();
+        for (int v = 0; v < newIds.length; v++) {
+            if (newIds[v] < 0) {
+                continue;
+            }
+            String from = Integer.toString(newIds[v] + base);
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                if (newIds[targets[i]] >= 0) {
+                    writer.write(from);
+                    writer.write(separator);
+                    writer.write(Integer.toString(newIds[targets[i]] + base));
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the graph as a GraphML document with node IDs "n0", "n1", ...
+     */
+    private void writeGraphML(Writer writer, int[] newIds) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+        writer.write("  <key id=\"label\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>\n");
+        writer.write("  <graph id=\"G\" edgedefault=\"directed\">\n");
+        for (int v = 0; v < newIds.length; v++) {
+            if (newIds[v] >= 0) {
+                writer.write("    <node id=\"n" + newIds[v] + "\"><data key=\"label\">");
+                writer.write(escape(String.valueOf(this.graph.getVertex(v))));
+                writer.write("</data></node>\n");
+            }
+        }
+        int[] offsets = this.graph.getOffsets();
+        int[] targets = this.graph.getTargets();
+        for (int v = 0; v < newIds.length; v++) {
+            if (newIds[v] < 0) {
+                continue;
+            }
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                if (newIds[targets[i]] >= 0) {
+                    writer.write("    <edge source=\"n" + newIds[v] + "\" target=\"n" + newIds[targets[i]] + "\"/>\n");
+                }
+            }
+        }
+        writer.write("  </graph>\n</graphml>\n");
+    }
+
+    /**
+     * Escapes the characters that are special in XML text.
+     */
+    private static String escape(String text) {
+        StringBuilder s = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '&') {
+                s.append("&amp;");
+            } else if (c == '<') {
+                s.append("&lt;");
+            } else if (c == '>') {
+                s.append("&gt;");
+            } else if (c == '"') {
+                s.append("&quot;");
+            } else {
+                s.append(c);
+            }
+        }
+        return s.toString();
+    }
+}
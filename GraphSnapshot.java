@@ -0,0 +1,473 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * GraphSnapshot is a binary file holding the user-story graph of a TweeterCollection together with the
+ * columns of the user table, so a later run can open it instead of parsing the TSV again. The file is
+ * memory-mapped when it is opened and nothing is decoded up front: names, counts and adjacency lists are
+ * read from the mapping when asked for, so the operating system only loads the pages that are used.
+ *
+ * The file starts with a fixed header, followed by int sections in big-endian order:
+ *
+ *   header   magic, format version, CRC32 of everything after the header, numUsers, numStories,
+ *            numArcs, label bytes, user ID bytes
+ *   offsets  numVertices + 1 ints, the CSR offsets of the graph with users first, as in BipartiteGraph.freeze()
+ *   targets  numArcs ints, the CSR targets
+ *   tweets   numUsers ints, the number of tweets of each user
+ *   stories  numUsers ints, the number of stories each user reported
+ *   labels   numVertices + 1 ints of byte offsets, then the UTF-8 screen names and story IDs
+ *   user IDs numUsers + 1 ints of byte offsets, then the UTF-8 Twitter user IDs
+ *
+ * A file must be smaller than 2 GB so that it fits in a single mapping.
+ *
+ * GraphSnapshot.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class GraphSnapshot {
+
+    public static final int MAGIC = 0x54574753;  // "TWGS"
+    public static final int VERSION = 1;
+    private static final int HEADER = 40;  // bytes, of which the last 4 are reserved
+
+    // instance variables
+    private final MappedByteBuffer buffer;
+    private final int version;
+    private final long checksum;
+    private final int numUsers;
+    private final int numStories;
+    private final int numArcs;
+    private final int offsetsAt;
+    private final int targetsAt;
+    private final int tweetsAt;
+    private final int storiesAt;
+    private final int labelOffsetsAt;
+    private final int labelBytesAt;
+    private final int idOffsetsAt;
+    private final int idBytesAt;
+
+    /**
+     * Constructor reads the header of a mapped snapshot file and works out where each section starts.
+     */
+    private GraphSnapshot(MappedByteBuffer buffer, String fileName) throws IOException {
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException(fileName + " is not a graph snapshot");
+        }
+        this.buffer = buffer;
+        this.version = buffer.getInt(4);
+        if (this.version != VERSION) {
+            throw new IOException(fileName + " has snapshot version " + this.version + ", expected " + VERSION);
+        }
+        this.checksum = buffer.getLong(8);
+        this.numUsers = buffer.getInt(16);
+        this.numStories = buffer.getInt(20);
+        this.numArcs = buffer.getInt(24);
+        int labelBytes = buffer.getInt(28);
+        int idBytes = buffer.getInt(32);
+        int numVertices = this.numUsers + this.numStories;
+
+        long position = HEADER;
+        this.offsetsAt = (int) position;
+        position += 4L * (numVertices + 1);
+        this.targetsAt = (int) position;
+        position += 4L * this.numArcs;
+        this.tweetsAt = (int) position;
+        position += 4L * this.numUsers;
+        this.storiesAt = (int) position;
+        position += 4L * this.numUsers;
+        this.labelOffsetsAt = (int) position;
+        position += 4L * (numVertices + 1);
+        this.labelBytesAt = (int) position;
+        position += labelBytes;
+        this.idOffsetsAt = (int) position;
+        position += 4L * (this.numUsers + 1);
+        this.idBytesAt = (int) position;
+        position += idBytes;
+        if (position != buffer.capacity()) {
+            throw new IOException(fileName + " is " + buffer.capacity() + " bytes, expected " + position);
+        }
+    }
+
+    /**
+     * Opens a snapshot file by mapping it into memory.
+     *
+     * @param String name of the snapshot file
+     * @param boolean true to read the whole file once and compare its checksum, false to trust it
+     * @return GraphSnapshot view of the file
+     * @throws IOException if the file cannot be mapped, is not a snapshot of this version, or fails the checksum
+     */
+    public static GraphSnapshot open(String fileName, boolean verify) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " is too large to be mapped at once");
+            }
+            GraphSnapshot snapshot = new GraphSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), fileName);
+            if (verify && !snapshot.verify()) {
+                throw new IOException(fileName + " failed its checksum");
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Writes a snapshot file. The vertices of the graph must be the users followed by the stories,
+     * as built by BipartiteGraph.freeze().
+     *
+     * @param String name of the snapshot file, replaced if it exists
+     * @param CSRGraph<String> graph of users and stories
+     * @param int number of users at the start of the graph
+     * @param String[] Twitter ID of each user
+     * @param int[] number of tweets of each user
+     * @param int[] number of stories each user reported
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String fileName, CSRGraph<String> graph, int numUsers, String[] twitterIds,
+                             int[] tweetCounts, int[] storyCounts) throws IOException {
+        int numVertices = graph.getNumVertices();
+        byte[][] labels = new byte[numVertices][];
+        for (int v = 0; v < numVertices; v++) {
+            labels[v] = graph.getVertex(v).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[][] ids = new byte[numUsers][];
+        for (int u = 0; u < numUsers; u++) {
+            ids[u] = twitterIds[u].getBytes(StandardCharsets.UTF_8);
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter out = new SectionWriter(channel, HEADER);
+            out.putInts(graph.getOffsets(), numVertices + 1);
+            out.putInts(graph.getTargets(), graph.getNumArcs());
+            out.putInts(tweetCounts, numUsers);
+            out.putInts(storyCounts, numUsers);
+            int labelBytes = out.putStrings(labels);
+            int idBytes = out.putStrings(ids);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(out.crc.getValue());
+            header.putInt(numUsers).putInt(numVertices - numUsers).putInt(graph.getNumArcs());
+            header.putInt(labelBytes).putInt(idBytes);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+    }
+
+    /**
+     * SectionWriter streams the sections of a snapshot through one buffer and keeps a running checksum.
+     */
+    private static class SectionWriter {
+
+        // instance variables
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32 crc;
+        private long position;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(1 << 20);
+            this.crc = new CRC32();
+            this.position = position;
+        }
+
+        void putInts(int[] values, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                if (this.buffer.remaining() < 4) {
+                    this.flush();
+                }
+                this.buffer.putInt(values[i]);
+            }
+        }
+
+        int putStrings(byte[][] strings) throws IOException {
+            int total = 0;
+            for (int i = 0; i <= strings.length; i++) {
+                if (this.buffer.remaining() < 4) {
+                    this.flush();
+                }
+                this.buffer.putInt(total);
+                if (i < strings.length) {
+                    total += strings[i].length;
+                }
+            }
+            for (byte[] s : strings) {
+                for (int i = 0; i < s.length; ) {
+                    if (!this.buffer.hasRemaining()) {
+                        this.flush();
+                    }
+                    int n = Math.min(s.length - i, this.buffer.remaining());
+                    this.buffer.put(s, i, n);
+                    i += n;
+                }
+            }
+            return total;
+        }
+
+        void flush() throws IOException {
+            this.buffer.flip();
+            this.crc.update(this.buffer.duplicate());
+            while (this.buffer.hasRemaining()) {
+                this.position += this.channel.write(this.buffer, this.position);
+            }
+            this.buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the whole file and compares its checksum with the one in the header.
+     *
+     * @return boolean true if the file is intact, false otherwise
+     */
+    public boolean verify() {
+        ByteBuffer body = this.buffer.duplicate();
+        body.position(HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue() == this.checksum;
+    }
+
+    /**
+     * Getter method for obtaining the format version of the file.
+     *
+     * @return int version
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Getter method for obtaining the number of users.
+     *
+     * @return int total number of users
+     */
+    public int getNumUsers() {
+        return this.numUsers;
+    }
+
+    /**
+     * Getter method for obtaining the number of stories.
+     *
+     * @return int total number of stories
+     */
+    public int getNumStories() {
+        return this.numStories;
+    }
+
+    /**
+     * Getter method for obtaining the number of vertices, users first and then stories.
+     *
+     * @return int total number of vertices
+     */
+    public int getNumVertices() {
+        return this.numUsers + this.numStories;
+    }
+
+    /**
+     * Getter method for obtaining the number of arcs, two for every share.
+     *
+     * @return int total number of arcs
+     */
+    public int getNumArcs() {
+        return this.numArcs;
+    }
+
+    /**
+     * Returns the number of arcs leaving the given vertex.
+     *
+     * @param int vertex ID, users first and then stories
+     * @return int out-degree of the vertex
+     */
+    public int getOutDegree(int vertex) {
+        return this.offset(vertex + 1) - this.offset(vertex);
+    }
+
+    /**
+     * Returns the vertices the given vertex has arcs to.
+     *
+     * @param int vertex ID, users first and then stories
+     * @return int[] IDs of the neighbouring vertices
+     */
+    public int[] getSuccessors(int vertex) {
+        int start = this.offset(vertex);
+        int[] result = new int[this.offset(vertex + 1) - start];
+        IntBuffer targets = this.ints(this.targetsAt, this.numArcs);
+        targets.position(start);
+        targets.get(result);
+        return result;
+    }
+
+    /**
+     * Returns the screen name or story ID of the given vertex.
+     *
+     * @param int vertex ID, users first and then stories
+     * @return String label of the vertex
+     */
+    public String getLabel(int vertex) {
+        return this.string(this.labelOffsetsAt, this.labelBytesAt, vertex);
+    }
+
+    /**
+     * Returns the screen name of the given user.
+     *
+     * @param int ID of the user
+     * @return String screen name
+     */
+    public String getUser(int user) {
+        return this.getLabel(user);
+    }
+
+    /**
+     * Returns the story ID of the given story.
+     *
+     * @param int ID of the story in the snapshot
+     * @return String story ID
+     */
+    public String getStory(int story) {
+        return this.getLabel(this.numUsers + story);
+    }
+
+    /**
+     * Returns the Twitter ID of the given user.
+     *
+     * @param int ID of the user
+     * @return String Twitter user ID
+     */
+    public String getTwitterId(int user) {
+        return this.string(this.idOffsetsAt, this.idBytesAt, user);
+    }
+
+    /**
+     * Returns the number of tweets of the given user.
+     *
+     * @param int ID of the user
+     * @return int number of tweets
+     */
+    public int getTweetCount(int user) {
+        return this.buffer.getInt(this.tweetsAt + 4 * user);
+    }
+
+    /**
+     * Returns the number of stories the given user reported in the data file.
+     *
+     * @param int ID of the user
+     * @return int number of stories
+     */
+    public int getStoryCount(int user) {
+        return this.buffer.getInt(this.storiesAt + 4 * user);
+    }
+
+    /**
+     * Copies the graph out of the file into a CSRGraph. The int sections are bulk copied, and only the
+     * labels have to be decoded.
+     *
+     * @return CSRGraph<String> of users and stories, users first
+     */
+    public CSRGraph<String> toCSRGraph() {
+        int numVertices = this.getNumVertices();
+        int[] offsets = new int[numVertices + 1];
+        int[] targets = new int[this.numArcs];
+        this.ints(this.offsetsAt, numVertices + 1).get(offsets);
+        this.ints(this.targetsAt, this.numArcs).get(targets);
+        Object[] labels = new Object[numVertices];
+        for (int v = 0; v < numVertices; v++) {
+            labels[v] = this.getLabel(v);
+        }
+        return new CSRGraph<String>(labels, offsets, targets);
+    }
+
+    /**
+     * Returns the CSR offset of the given vertex.
+     */
+    private int offset(int vertex) {
+        return this.buffer.getInt(this.offsetsAt + 4 * vertex);
+    }
+
+    /**
+     * Returns an int view of count ints starting at the given byte position.
+     */
+    private IntBuffer ints(int at, int count) {
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(at).limit(at + 4 * count);
+        return view.slice().asIntBuffer();
+    }
+
+    /**
+     * Decodes string i of a dictionary section.
+     */
+    private String string(int offsetsAt, int bytesAt, int i) {
+        int start = this.buffer.getInt(offsetsAt + 4 * i);
+        int end = this.buffer.getInt(offsetsAt + 4 * (i + 1));
+        byte[] bytes = new byte[end - start];
+        this.buffer.get(bytesAt + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Main method saves a generated collection, reopens it and compares the two, then checks that a file
+     * with one byte changed fails its checksum.
+     */
+    public static void main(String[] args) throws IOException {
+        File dataFile = File.createTempFile("snapshot_data", ".tsv");
+        File snapFile = File.createTempFile("snapshot", ".bin");
+        dataFile.deleteOnExit();
+        snapFile.deleteOnExit();
+        new BotNetworkGenerator(3000, 1000, 20000, 1.1, 11).write(dataFile.getPath());
+        TweeterCollection saved = new TweeterCollection(dataFile.getPath(), 1);
+        saved.appendRow("s\u00e9nateur", "2000001", 12, 2, Arrays.asList("s1", "histoire\u00e9"));  // non-ASCII labels
+        saved.saveSnapshot(snapFile.getPath());
+
+        TweeterCollection opened = TweeterCollection.openSnapshot(snapFile.getPath(), true);
+        CSRGraph<String> expected = saved.getSnapshot();
+        CSRGraph<String> got = opened.getSnapshot();
+        boolean sameLabels = expected.getNumVertices() == got.getNumVertices();
+        for (int v = 0; sameLabels && v < expected.getNumVertices(); v++) {
+            sameLabels = expected.getVertex(v).equals(got.getVertex(v));
+        }
+        System.out.println("Same vertex labels: \nExpected: true \nGot:" + sameLabels);
+        System.out.println("\nSame offsets and targets: \nExpected: true \nGot:"
+            + (Arrays.equals(expected.getOffsets(), got.getOffsets()) && Arrays.equals(expected.getTargets(), got.getTargets())));
+
+        UserTable before = saved.getUserTable();
+        UserTable after = opened.getUserTable();
+        boolean sameUsers = before.size() == after.size();
+        for (int u = 0; sameUsers && u < before.size(); u++) {
+            sameUsers = before.getTwitterId(u).equals(after.getTwitterId(u)) && before.getTweetCount(u) == after.getTweetCount(u)
+                && before.getStoryCount(u) == after.getStoryCount(u);
+        }
+        System.out.println("\nSame Twitter IDs, tweet counts and story counts: \nExpected: true \nGot:" + sameUsers);
+        System.out.println("\ngetTotalTweets(): \nExpected: " + saved.getTotalTweets() + " \nGot:" + opened.getTotalTweets());
+        System.out.println("\ngetTopWriters(3): \nExpected: " + saved.getTopWriters(3) + " \nGot:" + opened.getTopWriters(3));
+
+        try (RandomAccessFile file = new RandomAccessFile(snapFile, "rw")) {
+            long middle = file.length() / 2;
+            file.seek(middle);
+            int b = file.read();
+            file.seek(middle);
+            file.write(b ^ 1);
+        }
+        boolean failed = false;
+        try {
+            TweeterCollection.openSnapshot(snapFile.getPath(), true);
+        } catch (IOException e) {
+            failed = e.getMessage().equals(snapFile.getPath() + " failed its checksum");
+        }
+        System.out.println("\nopenSnapshot() of a changed file fails its checksum: \nExpected: true \nGot:" + failed);
+        System.out.println("\nopen() of a changed file without verifying: \nExpected: " + expected.getNumArcs() + " \nGot:"
+            + open(snapFile.getPath(), false).getNumArcs());
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * GraphVisitor is called back for each vertex reached by a traversal of an AdjListsGraph, such as
+ * AdjListsGraph.visitBreadthFirst(). Returning false stops the traversal, so a search for the first
+ * vertex with some property does not have to go through the rest of the graph.
+ *
+ * GraphVisitor.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+@FunctionalInterface
+public interface GraphVisitor<T> {
+
+    /**
+     * Visits a vertex reached by the traversal.
+     *
+     * @param T vertex reached
+     * @param int number of hops from the starting vertex along the traversal, 0 for the starting vertex
+     * @return boolean true to continue the traversal, false to stop it
+     */
+    boolean visit(T vertex, int depth);
+}
@@ -0,0 +1,363 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * HyperANF estimates the neighbourhood function and the closeness of every vertex of a CSRGraph in the style
+ * of HyperANF by Boldi, Rosa and Vigna. Each vertex keeps a HyperLogLog counter for the set of vertices it
+ * can reach within t hops. One pass over the arcs turns the counters for t into the counters for t + 1, so
+ * the whole run takes one pass per hop of the diameter instead of one search per vertex. The accuracy is set
+ * by the number of registers per counter: with 2^log2m registers the relative standard error of every ball
+ * size is about 1.04 / sqrt(2^log2m), at a cost of 2^log2m bytes per vertex for each of two counter arrays.
+ * The counters are split into blocks of at most 2^BLOCK_BITS bytes, so the number of vertices times the
+ * number of registers is not limited by the size of a single Java array.
+ *
+ * HyperANF.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class HyperANF {
+
+    private static final int BLOCK_BITS = 26;  // 64 MB per block of counters
+
+    // instance variables
+    private final CSRGraph<?> csr;
+    private final int log2m;
+    private final int m;
+    private final int blockShift;  // vertex ID to block number
+    private final int blockMask;  // vertex ID to position within its block
+    private final ForkJoinPool pool;
+    private final long seed;  // mixed once, so nearby seeds give unrelated hash functions
+    private double[] distanceSums;
+    private double[] reached;
+    private double[] neighbourhoodFunction;
+
+    /**
+     * Constructor creates a HyperANF that runs on the common ForkJoinPool.
+     *
+     * @param CSRGraph graph to be measured
+     * @param int base 2 logarithm of the number of registers per counter, from 4 to 16
+     */
+    public HyperANF(CSRGraph<?> csr, int log2m) {
+        this(csr, log2m, ForkJoinPool.commonPool(), 0x5DEECE66DL);
+    }
+
+    /**
+     * Constructor creates a HyperANF that runs on the given pool with the given hash seed.
+     *
+     * @param CSRGraph graph to be measured
+     * @param int base 2 logarithm of the number of registers per counter, from 4 to 16
+     * @param ForkJoinPool pool that runs the passes over the vertices
+     * @param long seed of the vertex hash function
+     * @throws IllegalArgumentException if log2m is out of range or the counters would not fit in the heap
+     */
+    public HyperANF(CSRGraph<?> csr, int log2m, ForkJoinPool pool, long seed) {
+        if (log2m < 4 || log2m > 16) {
+            throw new IllegalArgumentException("log2m must be between 4 and 16, got " + log2m);
+        }
+        long bytes = 2L * csr.getNumVertices() << log2m;
+        if (bytes > Runtime.getRuntime().maxMemory()) {
+            throw new IllegalArgumentException("counters for " + csr.getNumVertices() + " vertices at log2m " + log2m
+                + " need " + bytes + " bytes, more than the heap can hold");
+        }
+        this.csr = csr;
+        this.log2m = log2m;
+        this.m = 1 << log2m;
+        this.blockShift = BLOCK_BITS - log2m;
+        this.blockMask = (1 << this.blockShift) - 1;
+        this.pool = pool;
+        this.seed = mix(seed);
+    }
+
+    /**
+     * Getter method for obtaining the relative standard error of every ball size estimate.
+     *
+     * @return double relative standard error, 1.04 / sqrt(number of registers)
+     */
+    public double getRelativeStandardError() {
+        return 1.04 / Math.sqrt(this.m);
+    }
+
+    /**
+     * Runs the passes until no counter changes. Later calls return straight away.
+     */
+    public synchronized void run() {
+        if (this.distanceSums != null) {
+            return;
+        }
+        int n = this.csr.getNumVertices();
+        byte[][] current = this.newCounters(n);
+        byte[][] next = this.newCounters(n);
+        double[] previous = new double[n];
+        double[] sums = new double[n];
+        ArrayList<Double> function = new ArrayList<Double>();
+
+        for (int v = 0; v < n; v++) {  // every ball of radius 0 holds only its own vertex
+            this.add(current, v, v);
+            previous[v] = 1;
+        }
+        function.add((double) n);
+
+        boolean changed = true;
+        for (int t = 1; changed; t++) {
+            final byte[][] from = current;
+            final byte[][] to = next;
+            final int hops = t;
+            changed = this.pool.submit(() -> IntStream.range(0, n).parallel()
+                .map(v -> this.step(from, to, v, hops, previous, sums) ? 1 : 0).sum() > 0).join();
+
+            double total = 0;
+            for (int v = 0; v < n; v++) {
+                total += previous[v];
+            }
+            if (changed) {
+                function.add(total);
+            }
+            current = to;
+            next = from;
+        }
+
+        this.reached = previous;
+        this.distanceSums = sums;
+        this.neighbourhoodFunction = new double[function.size()];
+        for (int t = 0; t < function.size(); t++) {
+            this.neighbourhoodFunction[t] = function.get(t);
+        }
+    }
+
+    /**
+     * Returns zeroed counters for n vertices, in blocks of 2^blockShift vertices.
+     */
+    private byte[][] newCounters(int n) {
+        int perBlock = 1 << this.blockShift;
+        byte[][] counters = new byte[(int) (((long) n + perBlock - 1) >>> this.blockShift)][];
+        for (int b = 0; b < counters.length; b++) {
+            counters[b] = new byte[Math.min(perBlock, n - b * perBlock) << this.log2m];
+        }
+        return counters;
+    }
+
+    /**
+     * Unions the counters of the successors of v into its counter for the next radius, and credits the
+     * vertices newly counted at this radius to the distance sum of v.
+     *
+     * @return boolean true if the counter of v changed
+     */
+    private boolean step(byte[][] from, byte[][] to, int v, int hops, double[] previous, double[] sums) {
+        int[] offsets = this.csr.getOffsets();
+        int[] targets = this.csr.getTargets();
+        byte[] own = to[v >>> this.blockShift];
+        int base = (v & this.blockMask) << this.log2m;
+        System.arraycopy(from[v >>> this.blockShift], base, own, base, this.m);
+        boolean changed = false;
+        for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+            byte[] block = from[targets[i] >>> this.blockShift];
+            int other = (targets[i] & this.blockMask) << this.log2m;
+            for (int j = 0; j < this.m; j++) {
+                if (block[other + j] > own[base + j]) {
+                    own[base + j] = block[other + j];
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            double size = Math.max(this.estimate(to, v), previous[v]);  // balls never shrink
+            sums[v] += hops * (size - previous[v]);
+            previous[v] = size;
+        }
+        return changed;
+    }
+
+    /**
+     * Adds the given element to the counter of vertex v.
+     */
+    private void add(byte[][] counters, int v, int element) {
+        long hash = mix(element + this.seed);
+        int register = (int) (hash & (this.m - 1));
+        int rank = Long.numberOfLeadingZeros((hash >>> this.log2m) | 1L) - this.log2m + 1;
+        byte[] block = counters[v >>> this.blockShift];
+        int index = ((v & this.blockMask) << this.log2m) + register;
+        if (rank > block[index]) {
+            block[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Returns the HyperLogLog estimate of the counter of vertex v, with linear counting for small sets.
+     */
+    private double estimate(byte[][] counters, int v) {
+        double sum = 0;
+        int zeros = 0;
+        byte[] block = counters[v >>> this.blockShift];
+        int base = (v & this.blockMask) << this.log2m;
+        for (int j = 0; j < this.m; j++) {
+            sum += 1.0 / (1L << block[base + j]);
+            if (block[base + j] == 0) {
+                zeros++;
+            }
+        }
+        double alpha = this.m == 16 ? 0.673 : this.m == 32 ? 0.697 : this.m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / this.m);
+        double estimate = alpha * this.m * this.m / sum;
+        if (estimate <= 2.5 * this.m && zeros > 0) {
+            estimate = this.m * Math.log((double) this.m / zeros);
+        }
+        return estimate;
+    }
+
+    /**
+     * Spreads the bits of the given value over a 64-bit hash (the SplitMix64 finalizer).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Getter method for obtaining the estimated neighbourhood function. Entry t is the estimated number of
+     * pairs (x, y) with y reachable from x in at most t hops.
+     *
+     * @return double[] neighbourhood function, one entry per hop until it stops growing
+     */
+    public double[] getNeighbourhoodFunction() {
+        this.run();
+        return this.neighbourhoodFunction.clone();
+    }
+
+    /**
+     * Returns the estimated average number of hops from the given vertex to the vertices it reaches.
+     *
+     * @param int ID of the vertex
+     * @return double estimated average distance, or 0 for a vertex that reaches nothing
+     */
+    public double getAverageDistance(int v) {
+        this.run();
+        return this.reached[v] <= 1 ? 0 : this.distanceSums[v] / (this.reached[v] - 1);
+    }
+
+    /**
+     * Returns the estimated closeness of the given vertex, on the same scale as ClosenessCentrality.
+     *
+     * @param int ID of the vertex
+     * @return double estimated closeness, or 0 for a vertex that reaches nothing
+     */
+    public double getCloseness(int v) {
+        this.run();
+        int n = this.csr.getNumVertices();
+        if (this.reached[v] <= 1 || n <= 1 || this.distanceSums[v] <= 0) {
+            return 0;
+        }
+        double others = this.reached[v] - 1;
+        return (others / (n - 1)) * (others / this.distanceSums[v]);
+    }
+
+    /**
+     * Returns the k vertices with the highest estimated closeness among those accepted by the given filter.
+     * Every score carries the relative standard error of the counters.
+     *
+     * @param int number of vertices wanted
+     * @param IntPredicate filter on vertex IDs, such as users only or stories only
+     * @return List of Scores from most to least central
+     */
+    public List<ClosenessCentrality.Score> topK(int k, IntPredicate filter) {
+        this.run();
+        PriorityQueue<ClosenessCentrality.Score> best = new PriorityQueue<ClosenessCentrality.Score>();
+        for (int v = 0; v < this.csr.getNumVertices(); v++) {
+            if (filter.test(v)) {
+                best.add(new ClosenessCentrality.Score(v, this.csr.getVertex(v), this.getCloseness(v),
+                    this.getAverageDistance(v), this.getRelativeStandardError()));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+        }
+        ArrayList<ClosenessCentrality.Score> result = new ArrayList<ClosenessCentrality.Score>(best);
+        result.sort((a, b) -> b.compareTo(a));
+        return result;
+    }
+
+    /**
+     * Main method for testing.
+     */
+    public static void main(String[] args) {
+        System.out.println("***Test HyperANF against exact searches***");
+        Random random = new Random(7);
+        AdjListsGraph<Integer> g = new AdjListsGraph<Integer>();
+        int n = 2000;
+        for (int v = 0; v < n; v++) {
+            g.addVertex(v);
+        }
+        for (int i = 0; i < 3000; i++) {
+            g.addEdge(random.nextInt(n), random.nextInt(n));
+        }
+        CSRGraph<Integer> csr = g.freeze();
+
+        // exact neighbourhood function and average distances from one search per vertex
+        ArrayList<Double> exact = new ArrayList<Double>();
+        double[] exactAverage = new double[n];
+        int[] dist = new int[n];
+        for (int v = 0; v < n; v++) {
+            csr.distancesFrom(v, dist);
+            long sum = 0;
+            int reached = 0;
+            for (int d : dist) {
+                if (d >= 0) {
+                    while (exact.size() <= d) {
+                        exact.add(0.0);
+                    }
+                    exact.set(d, exact.get(d) + 1);
+                    sum += d;
+                    reached++;
+                }
+            }
+            exactAverage[v] = reached <= 1 ? 0 : (double) sum / (reached - 1);
+        }
+        for (int t = 1; t < exact.size(); t++) {
+            exact.set(t, exact.get(t) + exact.get(t - 1));
+        }
+
+        HyperANF anf = new HyperANF(csr, 8);
+        double error = anf.getRelativeStandardError();
+        double[] function = anf.getNeighbourhoodFunction();
+        double worst = 0;
+        for (int t = 0; t < exact.size(); t++) {
+            double estimate = function[Math.min(t, function.length - 1)];
+            worst = Math.max(worst, Math.abs(estimate - exact.get(t)) / exact.get(t));
+        }
+        System.out.println("neighbourhood function within 3 standard errors at every hop: \nExpected: true \nGot:"
+            + (worst <= 3 * error) + " (worst " + String.format("%.3f", worst) + ", standard error "
+            + String.format("%.3f", error) + ")");
+
+        double averageError = 0;
+        int counted = 0;
+        for (int v = 0; v < n; v++) {
+            if (exactAverage[v] > 0) {
+                averageError += Math.abs(anf.getAverageDistance(v) - exactAverage[v]) / exactAverage[v];
+                counted++;
+            }
+        }
+        averageError /= counted;
+        System.out.println("\nmean error of getAverageDistance() within 3 standard errors: \nExpected: true \nGot:"
+            + (averageError <= 3 * error) + " (" + String.format("%.3f", averageError) + ")");
+
+        // runs with neighbouring seeds should be independent, so averaging 16 of them at least halves the error
+        double total = exact.get(exact.size() - 1);
+        double single = 0;
+        double mean = 0;
+        int seeds = 16;
+        for (long seed = 1; seed <= seeds; seed++) {
+            double[] f = new HyperANF(csr, 8, ForkJoinPool.commonPool(), seed).getNeighbourhoodFunction();
+            single += Math.abs(f[f.length - 1] - total) / total / seeds;
+            mean += f[f.length - 1] / seeds;
+        }
+        System.out.println("\naverage over seeds 1 to 16 halves the error of a single seed: \nExpected: true \nGot:"
+            + (Math.abs(mean - total) / total < single / 2) + " (" + String.format("%.3f", Math.abs(mean - total) / total)
+            + " against " + String.format("%.3f", single) + ")");
+    }
+}
@@ -0,0 +1,160 @@
+import java.util.Arrays;
+
+/**
+ * IntList is a growable array of primitive ints. It is used to store adjacency lists and traversal
+ * frontiers as dense vertex IDs without boxing every entry into an Integer.
+ *
+ * IntList.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+class IntList {
+
+    // instance variables
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructor creates an empty IntList with a small default capacity.
+     */
+    public IntList() {
+        this(4);
+    }
+
+    /**
+     * Constructor creates an empty IntList with the given initial capacity.
+     *
+     * @param int initial capacity
+     */
+    public IntList(int capacity) {
+        this.values = new int[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    /**
+     * Getter method for obtaining the number of values stored in this list.
+     *
+     * @return int number of values
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the value at the given position.
+     *
+     * @param int position in the list
+     * @return int value stored at that position
+     */
+    public int get(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.values[index];
+    }
+
+    /**
+     * Replaces the value at the given position.
+     *
+     * @param int position in the list
+     * @param int new value
+     */
+    public void set(int index, int value) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        this.values[index] = value;
+    }
+
+    /**
+     * Appends the given value to the end of this list.
+     *
+     * @param int value to be added
+     */
+    public void add(int value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.values.length * 2);
+        }
+        this.values[this.size++] = value;
+    }
+
+    /**
+     * Returns the position of the first occurrence of the given value.
+     *
+     * @param int value to look for
+     * @return int position of the value, or -1 if it is not in the list
+     */
+    public int indexOf(int value) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a boolean indicating whether the given value is in this list.
+     *
+     * @param int value to look for
+     * @return boolean true if the value is in the list, false otherwise
+     */
+    public boolean contains(int value) {
+        return this.indexOf(value) >= 0;
+    }
+
+    /**
+     * Removes the value at the given position, shifting later values down by one.
+     *
+     * @param int position of the value to be removed
+     */
+    public void removeAt(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        System.arraycopy(this.values, index + 1, this.values, index, this.size - index - 1);
+        this.size--;
+    }
+
+    /**
+     * Removes the first occurrence of the given value.
+     *
+     * @param int value to be removed
+     * @return boolean true if the value was found and removed, false otherwise
+     */
+    public boolean removeValue(int value) {
+        int index = this.indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        this.removeAt(index);
+        return true;
+    }
+
+    /**
+     * Removes every value from this list while keeping its capacity.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Returns a copy of the values stored in this list.
+     *
+     * @return int[] array holding exactly the values of this list
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(this.values, this.size);
+    }
+
+    /**
+     * Returns a string representation of this list.
+     *
+     * @return String formatted list of values
+     */
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+}
@@ -1,6 +1,11 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+
 /**
  * InvestigateDriver is a driver class that creates a collection of Twitter accounts from data in the CSV
- * file and then investigates the activity of Russian bots.
+ * file and then investigates the activity of Russian bots. Each step of the investigation is a phase of
+ * a PhaseLog, so its time, heap use and garbage collection can be compared between runs. The phases and
+ * the PipelineMetrics counters are written to investigate-metrics.json at the end.
  *
  * InvestigateDriver.java
  * @author Alexandra Bullen-Smith
@@ -9,32 +14,74 @@
  */
 
 public class InvestigateDriver {
-    public static void main(String[] args) {
-        System.out.println("***Test Russian Accounts CSV***\n");
-        TweeterCollection tc = new TweeterCollection("All_Russian-Accounts-in-TT-stories.csv.tsv");
-        
-        tc.getGraph().saveToTGF("tweeterGraph.tgf");
+
+    /**
+     * Runs the whole investigation on a data file and prints its findings.
+     * 
+     * @param String name of the data file
+     * @param String name of the TGF file the graph is written to
+     * @param boolean true to look up the titles of the most and least popular stories
+     * @param PhaseLog log that records the phases of the run
+     * @return TweeterCollection built from the data file
+     */
+    public static TweeterCollection investigate(String dataFile, String tgfFile, boolean fetchTitles, PhaseLog log) {
+        log.begin("ingest");
+        TweeterCollection tc = new TweeterCollection(dataFile);
+
+        log.begin("export");
+        try {
+            tc.exportGraph(tgfFile, GraphExporter.Format.TGF, false, false);
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+
+        log.begin("stats");
         tc.calculateStoryStats();
         tc.calculateUserStats();
         
         System.out.println("Basic Graph Data:");
-        System.out.println("Total vertices: " + tc.getGraph().getNumVertices());
+        System.out.println("Total vertices: " + tc.getSnapshot().getNumVertices());
         System.out.println("Total tweets: " + tc.getTotalTweets());
         System.out.println("Total stories: " + tc.getTotalStories());
         System.out.println("Total users: " + tc.getTotalUsers());
-        System.out.println("Most active story user: " + tc.getMostActiveStoryUser());
-        System.out.println("Most active Tweeter user: "+ tc.getMostActiveTweeterUser());
+        System.out.println("Most active story user: " + tc.getMostActiveWriter());
+        System.out.println("Most active Tweeter user: "+ tc.getMostActiveTweeter());
         
+        log.begin("components");
         System.out.println("\nGraph Data from DFS and BFS:");
         System.out.println("Largest component size: " + tc.findLCCSize());
         System.out.println("Shortest connected component size: " + tc.findShortestConnectedComponentSize());
         
+        log.begin("titles");
         System.out.println("\nStory Trends to Analyze:");
         String mostPopStoryId = tc.getMostPopStory();
         String leastPopStoryId = tc.getLeastPopStory();
         System.out.println("ID of the most popular story: " + mostPopStoryId);
-        System.out.println("Title of the most popular story: " + tc.getStoryTitle(mostPopStoryId));
-        System.out.println("ID of least popular story: " + tc.PopStoryId);
-        System.out.println("Title of the least popular story: " + tc.getStoryTitle(tc.getLeastPopStory()));
+        System.out.println("ID of least popular story: " + leastPopStoryId);
+        if (fetchTitles) {
+            System.out.println("Title of the most popular story: " + tc.getStoryTitle(mostPopStoryId));
+            System.out.println("Title of the least popular story: " + tc.getStoryTitle(leastPopStoryId));
+        }
+        log.end();
+        return tc;
+    }
+
+    /**
+     * Main method runs the investigation on the data file given as the first argument, or on the
+     * Russian accounts file by default. Run with -Dtwitter.metrics=true to fill in the counters.
+     */
+    public static void main(String[] args) {
+        System.out.println("***Test Russian Accounts CSV***\n");
+        String dataFile = args.length > 0 ? args[0] : "All_Russian-Accounts-in-TT-stories.csv.tsv";
+        PhaseLog log = new PhaseLog();
+        investigate(dataFile, "tweeterGraph.tgf", true, log);
+        System.out.println("\nPhases:\n" + log);
+        String summary = PipelineMetrics.summary(log);
+        System.out.println(summary);
+        try (PrintWriter writer = new PrintWriter("investigate-metrics.json")) {
+            writer.println(summary);
+        } catch (IOException e) {
+            System.out.println(e);
+        }
     }
 }
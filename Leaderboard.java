@@ -0,0 +1,343 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Leaderboard ranks int IDs, such as the user or story IDs of a BipartiteGraph, by a score that can change
+ * at any time. It is a treap keyed on (score, ID) where every node also stores the size of its subtree, so
+ * an update costs O(log n), rank() costs O(log n), and top(k) or bottom(k) cost O(k + log n). Higher scores
+ * rank first, and among equal scores the lower ID ranks first. Nodes are stored in arrays indexed by ID,
+ * so the leaderboard holds no objects per entry. All methods are synchronized so readers can poll it while
+ * rows are being added.
+ *
+ * Leaderboard.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class Leaderboard {
+
+    private static final int NONE = -1;
+
+    // instance variables
+    private long[] score;
+    private int[] left;
+    private int[] right;
+    private int[] priority;
+    private int[] size;  // number of nodes in the subtree, 0 for IDs not on the leaderboard
+    private int root;
+    private Random random;
+
+    /**
+     * Constructor creates an empty Leaderboard.
+     */
+    public Leaderboard() {
+        this.score = new long[16];
+        this.left = new int[16];
+        this.right = new int[16];
+        this.priority = new int[16];
+        this.size = new int[16];
+        this.root = NONE;
+        this.random = new Random(42);
+    }
+
+    /**
+     * Getter method for obtaining the number of IDs on the leaderboard.
+     *
+     * @return int number of entries
+     */
+    public synchronized int size() {
+        return this.root == NONE ? 0 : this.size[this.root];
+    }
+
+    /**
+     * Returns a boolean indicating whether the given ID is on the leaderboard.
+     *
+     * @param int ID
+     * @return boolean true if the ID has a score, false otherwise
+     */
+    public synchronized boolean contains(int id) {
+        return id >= 0 && id < this.size.length && this.size[id] > 0;
+    }
+
+    /**
+     * Returns the score of the given ID.
+     *
+     * @param int ID
+     * @return long score of the ID, or 0 if it is not on the leaderboard
+     */
+    public synchronized long getScore(int id) {
+        return this.contains(id) ? this.score[id] : 0;
+    }
+
+    /**
+     * Sets the score of the given ID, adding the ID if it is not on the leaderboard yet.
+     *
+     * @param int ID
+     * @param long new score
+     */
+    public synchronized void update(int id, long newScore) {
+        if (this.contains(id)) {
+            if (this.score[id] == newScore) {
+                return;
+            }
+            this.root = this.erase(this.root, id);
+        }
+        this.ensureCapacity(id + 1);
+        this.score[id] = newScore;
+        this.left[id] = NONE;
+        this.right[id] = NONE;
+        this.priority[id] = this.random.nextInt();
+        this.size[id] = 1;
+        this.root = this.insert(this.root, id);
+    }
+
+    /**
+     * Adds the given amount to the score of the given ID.
+     *
+     * @param int ID
+     * @param long amount to add
+     */
+    public synchronized void increment(int id, long delta) {
+        this.update(id, this.getScore(id) + delta);
+    }
+
+    /**
+     * Returns the position of the given ID, counting from 0 for the highest score.
+     *
+     * @param int ID
+     * @return int rank of the ID, or -1 if it is not on the leaderboard
+     */
+    public synchronized int rank(int id) {
+        if (!this.contains(id)) {
+            return -1;
+        }
+        int rank = 0;
+        int node = this.root;
+        while (node != id) {
+            if (this.before(id, node)) {
+                node = this.left[node];
+            } else {
+                rank += this.sizeOf(this.left[node]) + 1;
+                node = this.right[node];
+            }
+        }
+        return rank + this.sizeOf(this.left[id]);
+    }
+
+    /**
+     * Returns the IDs with the k highest scores.
+     *
+     * @param int number of IDs wanted
+     * @return int[] IDs from the highest score down
+     */
+    public synchronized int[] top(int k) {
+        return this.walk(k, true);
+    }
+
+    /**
+     * Returns the IDs with the k lowest scores.
+     *
+     * @param int number of IDs wanted
+     * @return int[] IDs from the lowest score up
+     */
+    public synchronized int[] bottom(int k) {
+        return this.walk(k, false);
+    }
+
+    /**
+     * Walks the treap in order, or in reverse order, and stops after k IDs.
+     */
+    private int[] walk(int k, boolean fromTop) {
+        int[] result = new int[Math.max(0, Math.min(k, this.size()))];
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = this.root;
+        int count = 0;
+        while (count < result.length) {
+            while (node != NONE) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = fromTop ? this.left[node] : this.right[node];
+            }
+            node = stack[--depth];
+            result[count++] = node;
+            node = fromTop ? this.right[node] : this.left[node];
+        }
+        return result;
+    }
+
+    /**
+     * Returns a boolean indicating whether ID a ranks before ID b.
+     */
+    private boolean before(int a, int b) {
+        return this.score[a] > this.score[b] || (this.score[a] == this.score[b] && a < b);
+    }
+
+    /**
+     * Returns the number of nodes in the subtree rooted at node.
+     */
+    private int sizeOf(int node) {
+        return node == NONE ? 0 : this.size[node];
+    }
+
+    /**
+     * Recomputes the subtree size of node from its children.
+     */
+    private void resize(int node) {
+        this.size[node] = this.sizeOf(this.left[node]) + this.sizeOf(this.right[node]) + 1;
+    }
+
+    /**
+     * Inserts the single node id into the treap rooted at node and returns the new root.
+     */
+    private int insert(int node, int id) {
+        if (node == NONE) {
+            return id;
+        }
+        if (this.priority[id] > this.priority[node]) {
+            int[] parts = this.split(node, id);
+            this.left[id] = parts[0];
+            this.right[id] = parts[1];
+            this.resize(id);
+            return id;
+        }
+        if (this.before(id, node)) {
+            this.left[node] = this.insert(this.left[node], id);
+        } else {
+            this.right[node] = this.insert(this.right[node], id);
+        }
+        this.resize(node);
+        return node;
+    }
+
+    /**
+     * Splits the treap rooted at node into the nodes ranking before id and the rest.
+     */
+    private int[] split(int node, int id) {
+        if (node == NONE) {
+            return new int[] {NONE, NONE};
+        }
+        if (this.before(node, id)) {
+            int[] parts = this.split(this.right[node], id);
+            this.right[node] = parts[0];
+            this.resize(node);
+            parts[0] = node;
+            return parts;
+        }
+        int[] parts = this.split(this.left[node], id);
+        this.left[node] = parts[1];
+        this.resize(node);
+        parts[1] = node;
+        return parts;
+    }
+
+    /**
+     * Removes id from the treap rooted at node and returns the new root.
+     */
+    private int erase(int node, int id) {
+        if (node == id) {
+            int merged = this.merge(this.left[id], this.right[id]);
+            this.size[id] = 0;
+            return merged;
+        }
+        if (this.before(id, node)) {
+            this.left[node] = this.erase(this.left[node], id);
+        } else {
+            this.right[node] = this.erase(this.right[node], id);
+        }
+        this.resize(node);
+        return node;
+    }
+
+    /**
+     * Joins two treaps where every node of the first ranks before every node of the second.
+     */
+    private int merge(int a, int b) {
+        if (a == NONE) {
+            return b;
+        }
+        if (b == NONE) {
+            return a;
+        }
+        if (this.priority[a] > this.priority[b]) {
+            this.right[a] = this.merge(this.right[a], b);
+            this.resize(a);
+            return a;
+        }
+        this.left[b] = this.merge(a, this.left[b]);
+        this.resize(b);
+        return b;
+    }
+
+    /**
+     * Grows the node arrays so IDs up to capacity - 1 fit.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.size.length) {
+            int newLength = Math.max(capacity, this.size.length * 2);
+            this.score = Arrays.copyOf(this.score, newLength);
+            this.left = Arrays.copyOf(this.left, newLength);
+            this.right = Arrays.copyOf(this.right, newLength);
+            this.priority = Arrays.copyOf(this.priority, newLength);
+            this.size = Arrays.copyOf(this.size, newLength);
+        }
+    }
+
+    /**
+     * Main method makes random updates and increments and checks the leaderboard against a sorted array
+     * after every hundred of them.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(12);
+        Leaderboard board = new Leaderboard();
+        int ids = 3000;
+        long[] expected = new long[ids];
+        boolean[] present = new boolean[ids];
+        int checks = 0;
+        int failures = 0;
+        for (int op = 1; op <= 20000; op++) {
+            int id = random.nextInt(random.nextBoolean() ? 100 : ids);  // many ties and repeats among the first 100
+            long value = random.nextInt(41) - 20;
+            if (random.nextBoolean()) {
+                board.update(id, value);
+                expected[id] = value;
+            } else {
+                board.increment(id, value);
+                expected[id] += value;
+            }
+            present[id] = true;
+            if (op % 100 != 0) {
+                continue;
+            }
+
+            Integer[] order = new Integer[ids];
+            int count = 0;
+            for (int i = 0; i < ids; i++) {
+                if (present[i]) {
+                    order[count++] = i;
+                }
+            }
+            Arrays.sort(order, 0, count, (a, b) -> expected[a] != expected[b] ? Long.compare(expected[b], expected[a]) : a - b);
+            int k = random.nextInt(count + 2);
+            int[] top = board.top(k);
+            int[] bottom = board.bottom(k);
+            boolean ok = board.size() == count && top.length == Math.min(k, count) && bottom.length == top.length;
+            for (int i = 0; ok && i < top.length; i++) {
+                ok = top[i] == order[i] && bottom[i] == order[count - 1 - i];
+            }
+            for (int r = 0; ok && r < count; r++) {
+                ok = board.rank(order[r]) == r && board.getScore(order[r]) == expected[order[r]];
+            }
+            for (int i = 0; ok && i < ids; i++) {
+                ok = board.contains(i) == present[i] && (present[i] || board.rank(i) == -1);
+            }
+            checks++;
+            failures += ok ? 0 : 1;
+        }
+        System.out.println("Checks against a sorted array: \nExpected: 200 \nGot:" + checks);
+        System.out.println("\nChecks that found a difference: \nExpected: 0 \nGot:" + failures);
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedTSVReader reads the account/story TSV by memory-mapping the file and scanning its bytes for tabs,
+ * commas and newlines. Each line holds a screen name, a user ID, a tweet count, a story count and a comma
+ * separated list of story IDs. Counts are parsed straight from the bytes, and only the identifiers the graph
+ * keeps are turned into Strings. Rows are handed to a RowHandler as they are read, so the reader never holds
+ * more than one line. Files larger than the map window are mapped one window at a time, and a line that
+ * runs past the end of a window is read again from the start of the next one.
+ *
+ * MappedTSVReader.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class MappedTSVReader {
+
+    private static final int WINDOW = 1 << 30;  // largest region mapped at once
+
+    /**
+     * RowHandler receives the rows of the TSV file. For every line, user() is called once and then
+     * story() is called for each of the user's stories in order.
+     */
+    public interface RowHandler {
+
+        /**
+         * Receives the account columns of a line.
+         *
+         * @param String screen name
+         * @param String user ID
+         * @param int number of tweets
+         * @param int number of stories
+         */
+        void user(String screenName, String id, int tweetCount, int storyCount);
+
+        /**
+         * Receives one story of the user passed to the last call of user().
+         *
+         * @param String story ID
+         */
+        void story(String storyId);
+    }
+
+    // instance variables
+    private final RowHandler handler;
+    private byte[] scratch;
+    private int[] tabs;
+    private long rowsRead;
+    private long rowsSkipped;
+
+    /**
+     * Constructor creates a MappedTSVReader that passes every row to the given handler.
+     *
+     * @param RowHandler receiver of the rows
+     */
+    public MappedTSVReader(RowHandler handler) {
+        this.handler = handler;
+        this.scratch = new byte[256];
+        this.tabs = new int[4];
+    }
+
+    /**
+     * Getter method for obtaining the number of rows handed to the handler.
+     *
+     * @return long number of rows read
+     */
+    public long getRowsRead() {
+        return this.rowsRead;
+    }
+
+    /**
+     * Getter method for obtaining the number of non-empty lines skipped because they had fewer than
+     * five columns or a count that was not a number, such as a header line.
+     *
+     * @return long number of rows skipped
+     */
+    public long getRowsSkipped() {
+        return this.rowsSkipped;
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @param String name of the TSV file to be read in
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public void read(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.read(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Reads the lines of the file between the given byte positions. Both positions must be at the start
+     * of a line, or at the end of the file.
+     *
+     * @param FileChannel open channel of the TSV file
+     * @param long position of the first byte to be read
+     * @param long position just past the last byte to be read
+     * @throws IOException if the file cannot be mapped
+     */
+    public void read(FileChannel channel, long start, long end) throws IOException {
+        long rowsBefore = this.rowsRead;
+        long skippedBefore = this.rowsSkipped;
+        try {
+            this.readLines(channel, start, end);
+        } finally {
+            PipelineMetrics.add(PipelineMetrics.Counter.ROWS_PARSED, this.rowsRead - rowsBefore);
+            PipelineMetrics.add(PipelineMetrics.Counter.ROWS_SKIPPED, this.rowsSkipped - skippedBefore);
+        }
+    }
+
+    /**
+     * Maps the region one window at a time and passes each complete line to parseLine().
+     */
+    private void readLines(FileChannel channel, long start, long end) throws IOException {
+        long position = start;
+        while (position < end) {
+            int length = (int) Math.min(end - position, WINDOW);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean lastWindow = position + length == end;
+            int lineStart = 0;
+
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n') {
+                    this.parseLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < length && lastWindow) {  // last line without a newline
+                this.parseLine(buffer, lineStart, length);
+                lineStart = length;
+            } else if (lineStart == 0 && length == WINDOW) {
+                throw new IOException("Line at byte " + position + " is longer than " + WINDOW + " bytes");
+            }
+            position += lineStart;
+        }
+    }
+
+    /**
+     * Reads the complete lines from the given position to the current end of the file. A last line
+     * without a newline may still be being written, so it is left for the next call. This lets a file
+     * that other processes append to be followed one delta at a time.
+     *
+     * @param FileChannel open channel of the TSV file
+     * @param long position of the first byte to be read, at the start of a line
+     * @return long position just past the last complete line, where the next call should start
+     * @throws IOException if the file cannot be read or mapped
+     */
+    public long readAppended(FileChannel channel, long start) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = channel.size();
+        while (position > start) {
+            int length = (int) Math.min(position - start, probe.capacity());
+            probe.clear().limit(length);
+            long from = position - length;
+            int n;
+            do {
+                n = channel.read(probe, from + probe.position());
+            } while (n > 0 && probe.hasRemaining());
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    long end = from + i + 1;
+                    this.read(channel, start, end);
+                    return end;
+                }
+            }
+            position = from;
+        }
+        return start;
+    }
+
+    /**
+     * Reads lines from bytes already in memory, such as rows handed over by another part of the program.
+     * A last line without a newline is read as well.
+     *
+     * @param byte[] UTF-8 encoded lines
+     */
+    public void read(byte[] data) {
+        long rowsBefore = this.rowsRead;
+        long skippedBefore = this.rowsSkipped;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int lineStart = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '\n') {
+                this.parseLine(buffer, lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < data.length) {
+            this.parseLine(buffer, lineStart, data.length);
+        }
+        PipelineMetrics.add(PipelineMetrics.Counter.ROWS_PARSED, this.rowsRead - rowsBefore);
+        PipelineMetrics.add(PipelineMetrics.Counter.ROWS_SKIPPED, this.rowsSkipped - skippedBefore);
+    }
+
+    /**
+     * Splits the line in [start, end) into its columns and passes it to the handler.
+     */
+    private void parseLine(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return;
+        }
+
+        int[] tabs = this.tabs;
+        int numTabs = 0;
+        for (int i = start; i < end && numTabs < 4; i++) {
+            if (buffer.get(i) == '\t') {
+                tabs[numTabs++] = i;
+            }
+        }
+        long tweetCount = numTabs == 4 ? parseCount(buffer, tabs[1] + 1, tabs[2]) : -1;
+        long storyCount = numTabs == 4 ? parseCount(buffer, tabs[2] + 1, tabs[3]) : -1;
+        if (tweetCount < 0 || storyCount < 0) {
+            this.rowsSkipped++;
+            return;
+        }
+
+        this.handler.user(this.decode(buffer, start, tabs[0]), this.decode(buffer, tabs[0] + 1, tabs[1]),
+            (int) tweetCount, (int) storyCount);
+        int storyStart = tabs[3] + 1;
+        for (int i = storyStart; i <= end; i++) {
+            if (i == end || buffer.get(i) == ',' || buffer.get(i) == '\t') {
+                if (i > storyStart) {
+                    this.handler.story(this.decode(buffer, storyStart, i));
+                }
+                storyStart = i + 1;
+            }
+        }
+        this.rowsRead++;
+    }
+
+    /**
+     * Parses the decimal number in [start, end) without building a String.
+     *
+     * @return long value of the number, or -1 if the bytes are empty, not all digits or larger than an int
+     */
+    private static long parseCount(ByteBuffer buffer, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Decodes the UTF-8 bytes in [start, end) into a String.
+     */
+    private String decode(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length > this.scratch.length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+        buffer.get(start, this.scratch, 0, length);
+        return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,503 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * MinHashIndex finds users whose sets of shared stories are alike without comparing every pair of users.
+ * Each user gets a MinHash signature, the smallest hash of their stories under each of numHashes hash
+ * functions, so two signatures agree in each position with probability equal to the Jaccard similarity of
+ * the two story sets. Signatures are cut into bands of rows, and users whose band hashes match land in the
+ * same bucket of that band. Only users that share a bucket in some band are compared, and every candidate
+ * is checked with its exact Jaccard similarity. Pairs with similarity s become candidates with probability
+ * 1 - (1 - s^rows)^bands, an S-curve that is steepest near (1 / bands)^(1 / rows).
+ *
+ * Each band is stored as one sorted array of (band hash, user) longs, so a bucket is a run of that array.
+ * The arrays of one build are published together as an immutable State, so queries read them without a
+ * lock while rebuild() prepares the next State. Queries borrow stamp arrays from a pool and mark them with
+ * a new epoch each time, so they do not allocate or clear arrays the size of the graph.
+ *
+ * MinHashIndex.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class MinHashIndex {
+
+    // instance variables
+    private final int numHashes;
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] increments;
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<Scratch> spares;
+    private volatile State state;
+
+    /**
+     * State holds one build of the index. It never changes once published.
+     */
+    private static class State {
+        private final CSRGraph<String> bipartite;
+        private final int numUsers;
+        private final int[] bandKeys;  // band hash of user u in band b at u * bands + b
+        private final long[][] buckets;  // for each band, (band hash << 32 | user) sorted
+
+        private State(CSRGraph<String> bipartite, int numUsers, int[] bandKeys, long[][] buckets) {
+            this.bipartite = bipartite;
+            this.numUsers = numUsers;
+            this.bandKeys = bandKeys;
+            this.buckets = buckets;
+        }
+    }
+
+    /**
+     * Scratch holds the stamp array of a query. Stories of the query user and users already compared are
+     * stamped with the query's epoch; their IDs do not overlap, since users come first in the graph.
+     */
+    private static class Scratch {
+        private int[] stamp = new int[0];
+        private int epoch;
+
+        /**
+         * Starts a new query on a graph of n vertices and returns its epoch.
+         */
+        private int begin(int n) {
+            if (this.stamp.length < n) {
+                this.stamp = new int[n];
+                this.epoch = 0;
+            }
+            if (++this.epoch == Integer.MAX_VALUE) {
+                Arrays.fill(this.stamp, 0);
+                this.epoch = 1;
+            }
+            return this.epoch;
+        }
+    }
+
+    /**
+     * Match holds the similarity of two users.
+     */
+    public static class Match implements Comparable<Match> {
+
+        // instance variables
+        private final int user;
+        private final int other;
+        private final String userName;
+        private final String otherName;
+        private final double similarity;
+
+        /**
+         * Constructor creates a Match object and initializes instance variables.
+         *
+         * @param int ID of the first user
+         * @param int ID of the second user
+         * @param String screen name of the first user
+         * @param String screen name of the second user
+         * @param double Jaccard similarity of their story sets
+         */
+        public Match(int user, int other, String userName, String otherName, double similarity) {
+            this.user = user;
+            this.other = other;
+            this.userName = userName;
+            this.otherName = otherName;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Getter method for obtaining the ID of the first user.
+         *
+         * @return int ID of the user
+         */
+        public int getUser() {
+            return this.user;
+        }
+
+        /**
+         * Getter method for obtaining the ID of the second user.
+         *
+         * @return int ID of the user
+         */
+        public int getOther() {
+            return this.other;
+        }
+
+        /**
+         * Getter method for obtaining the Jaccard similarity of the two users.
+         *
+         * @return double shared stories divided by the stories either user shared
+         */
+        public double getSimilarity() {
+            return this.similarity;
+        }
+
+        /**
+         * Orders matches by similarity, breaking ties by the lower user IDs.
+         */
+        public int compareTo(Match other) {
+            int bySimilarity = Double.compare(this.similarity, other.similarity);
+            if (bySimilarity != 0) {
+                return bySimilarity;
+            }
+            int byUser = Integer.compare(other.user, this.user);
+            return byUser != 0 ? byUser : Integer.compare(other.other, this.other);
+        }
+
+        /**
+         * Returns a string representation of this match.
+         *
+         * @return String both screen names with their similarity
+         */
+        public String toString() {
+            return this.userName + " ~ " + this.otherName + " (" + String.format("%.3f", this.similarity) + ")";
+        }
+    }
+
+    /**
+     * Constructor creates a MinHashIndex over the users of the given graph and builds it on the common
+     * ForkJoinPool.
+     *
+     * @param CSRGraph<String> graph of users and stories, users first, as built by BipartiteGraph.freeze()
+     * @param int number of users at the start of the graph
+     * @param int number of hash functions, a multiple of bands
+     * @param int number of bands the signatures are cut into
+     * @param long seed of the hash functions
+     */
+    public MinHashIndex(CSRGraph<String> bipartite, int numUsers, int numHashes, int bands, long seed) {
+        this(bipartite, numUsers, numHashes, bands, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor creates a MinHashIndex over the users of the given graph and builds it on the given pool.
+     *
+     * @param CSRGraph<String> graph of users and stories, users first, as built by BipartiteGraph.freeze()
+     * @param int number of users at the start of the graph
+     * @param int number of hash functions, a multiple of bands
+     * @param int number of bands the signatures are cut into
+     * @param long seed of the hash functions
+     * @param ForkJoinPool pool that builds and queries the index
+     */
+    public MinHashIndex(CSRGraph<String> bipartite, int numUsers, int numHashes, int bands, long seed, ForkJoinPool pool) {
+        if (bands < 1 || numHashes < bands || numHashes % bands != 0) {
+            throw new IllegalArgumentException("numHashes must be a positive multiple of bands");
+        }
+        this.numHashes = numHashes;
+        this.bands = bands;
+        this.rows = numHashes / bands;
+        this.multipliers = new long[numHashes];
+        this.increments = new long[numHashes];
+        this.pool = pool;
+        this.spares = new ConcurrentLinkedQueue<Scratch>();
+        Random random = new Random(seed);
+        for (int h = 0; h < numHashes; h++) {
+            this.multipliers[h] = random.nextLong() | 1L;
+            this.increments[h] = random.nextLong();
+        }
+        this.rebuild(bipartite, numUsers);
+    }
+
+    /**
+     * Getter method for obtaining the similarity at which a pair becomes a candidate about half the time.
+     *
+     * @return double (1 / bands)^(1 / rows)
+     */
+    public double getThreshold() {
+        return Math.pow(1.0 / this.bands, 1.0 / this.rows);
+    }
+
+    /**
+     * Rebuilds the index for a new version of the graph, for example after more rows were appended.
+     * The hash functions stay the same, and queries keep using the previous build until this one is done.
+     *
+     * @param CSRGraph<String> graph of users and stories, users first
+     * @param int number of users at the start of the graph
+     */
+    public synchronized void rebuild(CSRGraph<String> bipartite, int numUsers) {
+        int[] keys = new int[numUsers * this.bands];
+        ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[this.numHashes]);
+        this.pool.submit(() -> IntStream.range(0, numUsers).parallel()
+            .forEach(u -> this.sign(bipartite, u, scratch.get(), keys)))
+            .join();
+
+        long[][] sorted = new long[this.bands][];
+        this.pool.submit(() -> IntStream.range(0, this.bands).parallel().forEach(b -> {
+            int[] offsets = bipartite.getOffsets();
+            long[] run = new long[numUsers];
+            int count = 0;
+            for (int u = 0; u < numUsers; u++) {
+                if (offsets[u + 1] > offsets[u]) {  // users without stories are in no bucket
+                    run[count++] = ((long) keys[u * this.bands + b] << 32) | u;
+                }
+            }
+            run = Arrays.copyOf(run, count);
+            Arrays.sort(run);
+            sorted[b] = run;
+        })).join();
+
+        this.state = new State(bipartite, numUsers, keys, sorted);
+    }
+
+    /**
+     * Computes the signature of user u and stores the hash of each of its bands.
+     */
+    private void sign(CSRGraph<String> bipartite, int u, int[] signature, int[] keys) {
+        int[] offsets = bipartite.getOffsets();
+        int[] targets = bipartite.getTargets();
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            long story = targets[i];
+            for (int h = 0; h < this.numHashes; h++) {
+                int value = (int) (mix(story * this.multipliers[h] + this.increments[h]) >>> 33);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        for (int b = 0; b < this.bands; b++) {
+            long hash = 0xcbf29ce484222325L;
+            for (int r = b * this.rows; r < (b + 1) * this.rows; r++) {
+                hash = (hash ^ signature[r]) * 0x100000001b3L;
+            }
+            keys[u * this.bands + b] = (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    /**
+     * Scrambles the bits of a 64-bit value (the finalizer of MurmurHash3).
+     */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * Finds the users whose story sets are most like the given user's.
+     *
+     * @param int ID of the user
+     * @param int number of users wanted
+     * @return List of Matches from the most to the least similar
+     */
+    public List<Match> similarTo(int user, int k) {
+        State current = this.state;
+        ArrayList<Match> matches = new ArrayList<Match>();
+        if (user < 0 || user >= current.numUsers) {
+            return matches;
+        }
+        Scratch scratch = this.spares.poll();
+        if (scratch == null) {
+            scratch = new Scratch();
+        }
+        int epoch = scratch.begin(current.bipartite.getNumVertices());
+        int[] stamp = scratch.stamp;
+        this.mark(current, user, stamp, epoch);
+        stamp[user] = epoch;
+        for (int b = 0; b < this.bands; b++) {
+            long[] bucket = current.buckets[b];
+            long key = (long) current.bandKeys[user * this.bands + b] << 32;
+            for (int i = this.runStart(bucket, key); i < bucket.length && (bucket[i] & 0xffffffff00000000L) == key; i++) {
+                int other = (int) bucket[i];
+                if (stamp[other] != epoch) {
+                    stamp[other] = epoch;
+                    matches.add(this.match(current, user, other, this.jaccard(current, user, other, stamp, epoch)));
+                }
+            }
+        }
+        this.spares.offer(scratch);
+        Collections.sort(matches, Collections.reverseOrder());
+        return new ArrayList<Match>(matches.subList(0, Math.min(k, matches.size())));
+    }
+
+    /**
+     * Finds every pair of users whose Jaccard similarity is at least s among the candidates of the bands.
+     * Pairs well below getThreshold() are rarely candidates, so s should not be much lower than that.
+     *
+     * @param double lowest similarity wanted
+     * @return List of Matches, each pair once with the lower user ID first, from the most similar down
+     */
+    public List<Match> pairsAbove(double s) {
+        State current = this.state;
+        int numVertices = current.bipartite.getNumVertices();
+        ThreadLocal<int[]> stamps = ThreadLocal.withInitial(() -> new int[numVertices]);
+        List<Match> pairs = this.pool.submit(() -> IntStream.range(0, current.numUsers).parallel()
+            .mapToObj(u -> this.pairsOf(current, u, s, stamps.get()))
+            .flatMap(List::stream)
+            .collect(Collectors.toList()))
+            .join();
+        ArrayList<Match> result = new ArrayList<Match>(pairs);
+        Collections.sort(result, Collections.reverseOrder());
+        return result;
+    }
+
+    /**
+     * Finds the pairs (u, v) with u < v and similarity at least s. A pair is only looked at in the first
+     * band where the two users collide, so no pair is checked twice.
+     */
+    private List<Match> pairsOf(State current, int u, double s, int[] stamp) {
+        ArrayList<Match> pairs = new ArrayList<Match>();
+        int epoch = u + 1;  // stamps are distinct per user, so the array never has to be cleared
+        boolean marked = false;
+        for (int b = 0; b < this.bands; b++) {
+            long[] bucket = current.buckets[b];
+            long key = (long) current.bandKeys[u * this.bands + b] << 32;
+            int start = this.runStart(bucket, key);
+            for (int i = start; i < bucket.length && (bucket[i] & 0xffffffff00000000L) == key; i++) {
+                int v = (int) bucket[i];
+                if (v <= u || this.collidedBefore(current, u, v, b)) {
+                    continue;
+                }
+                if (!marked) {
+                    this.mark(current, u, stamp, epoch);
+                    marked = true;
+                }
+                double similarity = this.jaccard(current, u, v, stamp, epoch);
+                if (similarity >= s) {
+                    pairs.add(this.match(current, u, v, similarity));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns a boolean indicating whether users u and v share a bucket in a band before band b.
+     */
+    private boolean collidedBefore(State current, int u, int v, int b) {
+        int[] keys = current.bandKeys;
+        for (int earlier = 0; earlier < b; earlier++) {
+            if (keys[u * this.bands + earlier] == keys[v * this.bands + earlier]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the first entry of the bucket array with the given band hash.
+     */
+    private int runStart(long[] bucket, long key) {
+        int i = Arrays.binarySearch(bucket, key);  // user 0 would be first in its run, so a hit is the run start
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /**
+     * Stamps the stories of user u with the given epoch.
+     */
+    private void mark(State current, int u, int[] stamp, int epoch) {
+        int[] offsets = current.bipartite.getOffsets();
+        int[] targets = current.bipartite.getTargets();
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            stamp[targets[i]] = epoch;
+        }
+    }
+
+    /**
+     * Returns the exact Jaccard similarity of users u and v, given that the stories of u carry the epoch.
+     */
+    private double jaccard(State current, int u, int v, int[] stamp, int epoch) {
+        int[] offsets = current.bipartite.getOffsets();
+        int[] targets = current.bipartite.getTargets();
+        int common = 0;
+        for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+            if (stamp[targets[i]] == epoch) {
+                common++;
+            }
+        }
+        int union = (offsets[u + 1] - offsets[u]) + (offsets[v + 1] - offsets[v]) - common;
+        return union == 0 ? 0 : (double) common / union;
+    }
+
+    /**
+     * Creates a Match labelled with the screen names of both users.
+     */
+    private Match match(State current, int u, int v, double similarity) {
+        return new Match(u, v, current.bipartite.getVertex(u), current.bipartite.getVertex(v), similarity);
+    }
+
+    /**
+     * Main method plants clusters of accounts that push the same stories, and checks that similarTo() finds
+     * the other members of a cluster and that pairsAbove() agrees with an exact count of shared stories.
+     */
+    public static void main(String[] args) throws IOException {
+        File dataFile = File.createTempFile("minhash", ".tsv");
+        File clusterFile = new File(dataFile.getPath() + ".clusters");
+        dataFile.deleteOnExit();
+        clusterFile.deleteOnExit();
+        BotNetworkGenerator generator = new BotNetworkGenerator(5000, 3000, 40000, 1.1, 9);
+        generator.plantClusters(10, 20, 30);
+        generator.write(dataFile.getPath());
+        TweeterCollection tc = new TweeterCollection(dataFile.getPath(), 1);
+        BipartiteGraph bipartite = tc.getBipartiteGraph();
+        MinHashIndex index = tc.getSimilarityIndex();
+
+        int numUsers = bipartite.getNumUsers();
+        int[] clusterOf = new int[numUsers];
+        Arrays.fill(clusterOf, -1);
+        List<String> clusters = Files.readAllLines(clusterFile.toPath());
+        for (int c = 0; c < clusters.size(); c++) {
+            for (String member : clusters.get(c).split(",")) {
+                clusterOf[bipartite.getUserId(member)] = c;
+            }
+        }
+        int found = 0;
+        int wanted = 0;
+        for (int u = 0; u < numUsers; u++) {
+            if (clusterOf[u] >= 0) {
+                for (Match match : index.similarTo(u, 19)) {
+                    found += clusterOf[match.getOther()] == clusterOf[u] ? 1 : 0;
+                }
+                wanted += 19;
+            }
+        }
+        System.out.println("Share of the other cluster members among the 19 most similar: \nExpected: at least 0.9 \nGot:"
+            + String.format("%.3f", (double) found / wanted));
+
+        // exact similarity of every pair that shares a story, counted story by story
+        double threshold = index.getThreshold();
+        int clear = 0;
+        int[] common = new int[numUsers];
+        HashMap<Long,Double> exact = new HashMap<Long,Double>();
+        for (int u = 0; u < numUsers; u++) {
+            Arrays.fill(common, 0);
+            for (int story : bipartite.getStoriesOf(u)) {
+                for (int v : bipartite.getUsersOf(story)) {
+                    common[v]++;
+                }
+            }
+            for (int v = u + 1; v < numUsers; v++) {
+                int union = bipartite.getUserDegree(u) + bipartite.getUserDegree(v) - common[v];
+                double similarity = (double) common[v] / union;
+                if (common[v] > 0 && similarity >= threshold) {
+                    exact.put((long) u * numUsers + v, similarity);
+                    clear += similarity >= 0.6 ? 1 : 0;
+                }
+            }
+        }
+        int wrong = 0;
+        for (Match match : index.pairsAbove(threshold)) {
+            Double similarity = exact.remove((long) match.getUser() * numUsers + match.getOther());  // null if repeated
+            wrong += similarity == null || similarity != match.getSimilarity() ? 1 : 0;
+        }
+        int missed = 0;
+        for (double similarity : exact.values()) {
+            missed += similarity >= 0.6 ? 1 : 0;  // candidates with probability 1 - (1 - 0.6^4)^32 > 0.98
+        }
+        System.out.println("\ngetThreshold(): \nExpected: " + Math.pow(1.0 / 32, 1.0 / 4) + " \nGot:" + threshold);
+        System.out.println("\nPairs from pairsAbove() below the threshold, repeated or with the wrong similarity: "
+            + "\nExpected: 0 \nGot:" + wrong);
+        System.out.println("\nShare of the " + clear + " pairs with similarity 0.6 or more that pairsAbove() finds: "
+            + "\nExpected: at least 0.95 \nGot:" + String.format("%.3f", 1 - (double) missed / clear));
+    }
+}
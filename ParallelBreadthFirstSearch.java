@@ -0,0 +1,412 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ParallelBreadthFirstSearch runs a level-synchronous breadth first search over a CSRGraph on a ForkJoinPool.
+ * Each level is either a top-down step, where the frontier pushes to its successors, or a bottom-up step,
+ * where every unvisited vertex looks for a predecessor in the frontier. The search switches to bottom-up
+ * when the arcs leaving the frontier outweigh the arcs left to check, which happens after a hop or two on
+ * the story/user graph because a few stories are shared by almost every account, and switches back once
+ * the frontier is small again. Visited vertices are kept in an atomic bitset so each one is claimed once.
+ *
+ * ParallelBreadthFirstSearch.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class ParallelBreadthFirstSearch {
+
+    // switching thresholds from the direction-optimizing BFS of Beamer, Asanovic and Patterson
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    private static final int THRESHOLD = 2048;  // vertices or frontier entries handled by one task
+
+    // instance variables
+    private final CSRGraph<?> csr;
+    private final ForkJoinPool pool;
+    private CSRGraph<?> reverse;
+
+    /**
+     * Constructor creates a ParallelBreadthFirstSearch that runs on the common ForkJoinPool.
+     *
+     * @param CSRGraph graph to be searched
+     */
+    public ParallelBreadthFirstSearch(CSRGraph<?> csr) {
+        this(csr, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor creates a ParallelBreadthFirstSearch that runs on the given pool.
+     *
+     * @param CSRGraph graph to be searched
+     * @param ForkJoinPool pool that runs the frontier tasks
+     */
+    public ParallelBreadthFirstSearch(CSRGraph<?> csr, ForkJoinPool pool) {
+        this.csr = csr;
+        this.pool = pool;
+    }
+
+    /**
+     * Result holds the outcome of one search: the level of every reached vertex and the size of every frontier.
+     */
+    public static class Result {
+
+        // instance variables
+        private final int[] dist;
+        private final int[] levelSizes;
+        private final boolean[] bottomUp;
+
+        /**
+         * Constructor creates a Result from the finished search arrays.
+         */
+        Result(int[] dist, int[] levelSizes, boolean[] bottomUp) {
+            this.dist = dist;
+            this.levelSizes = levelSizes;
+            this.bottomUp = bottomUp;
+        }
+
+        /**
+         * Returns the number of hops from the source to the given vertex.
+         *
+         * @param int ID of the vertex
+         * @return int distance to the vertex, or -1 if it was not reached
+         */
+        public int getDistance(int v) {
+            return this.dist[v];
+        }
+
+        /**
+         * Returns a boolean indicating whether the given vertex was reached.
+         *
+         * @param int ID of the vertex
+         * @return boolean true if the vertex is reachable from the source, false otherwise
+         */
+        public boolean isReached(int v) {
+            return this.dist[v] >= 0;
+        }
+
+        /**
+         * Getter method for obtaining the number of vertices reached, including the source.
+         *
+         * @return int number of reached vertices
+         */
+        public int getNumReached() {
+            int total = 0;
+            for (int size : this.levelSizes) {
+                total += size;
+            }
+            return total;
+        }
+
+        /**
+         * Getter method for obtaining the size of the frontier at every level. Entry 0 is the source.
+         *
+         * @return int[] number of vertices first reached at each level
+         */
+        public int[] getLevelSizes() {
+            return this.levelSizes.clone();
+        }
+
+        /**
+         * Returns a boolean indicating whether the given level was expanded bottom-up.
+         *
+         * @param int level of the search
+         * @return boolean true if the step producing that level was bottom-up, false if it was top-down
+         */
+        public boolean isBottomUp(int level) {
+            return this.bottomUp[level];
+        }
+
+        /**
+         * Returns the IDs of the reached vertices ordered by level, and by ID within a level.
+         *
+         * @return int[] IDs of the reached vertices
+         */
+        public int[] getReachedIds() {
+            int[] start = new int[this.levelSizes.length + 1];
+            for (int d = 0; d < this.levelSizes.length; d++) {
+                start[d + 1] = start[d] + this.levelSizes[d];
+            }
+            int[] ids = new int[start[this.levelSizes.length]];
+            for (int v = 0; v < this.dist.length; v++) {
+                if (this.dist[v] >= 0) {
+                    ids[start[this.dist[v]]++] = v;
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Does a parallel breadth first search of the graph.
+     *
+     * @param int ID of the starting vertex
+     * @return Result holding the distance of every vertex and the per-level frontier sizes
+     */
+    public Result search(int source) {
+        PipelineMetrics.TraversalEvent event = PipelineMetrics.startTraversal();
+        int n = this.csr.getNumVertices();
+        int[] offsets = this.csr.getOffsets();
+        AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        IntList levelSizes = new IntList();
+        IntList bottomUpLevels = new IntList();
+
+        visited.set(source >>> 6, 1L << source);
+        dist[source] = 0;
+        int[] frontier = {source};
+        long unexploredArcs = this.csr.getNumArcs() - this.csr.getOutDegree(source);
+        levelSizes.add(1);
+        bottomUpLevels.add(0);
+        boolean bottomUp = false;
+
+        for (int level = 1; frontier.length > 0; level++) {
+            long frontierArcs = 0;
+            for (int v : frontier) {
+                frontierArcs += this.csr.getOutDegree(v);
+            }
+            if (!bottomUp && frontierArcs > unexploredArcs / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontier.length < n / BETA) {
+                bottomUp = false;
+            }
+
+            if (bottomUp) {
+                frontier = this.bottomUpStep(frontier, visited, dist, level);
+            } else {
+                frontier = this.pool.invoke(new TopDownTask(frontier, 0, frontier.length, visited, dist, level)).toArray();
+            }
+            for (int v : frontier) {
+                unexploredArcs -= offsets[v + 1] - offsets[v];
+            }
+            if (frontier.length > 0) {
+                levelSizes.add(frontier.length);
+                bottomUpLevels.add(bottomUp ? 1 : 0);
+            }
+        }
+
+        boolean[] bottomUpFlags = new boolean[bottomUpLevels.size()];
+        for (int i = 0; i < bottomUpFlags.length; i++) {
+            bottomUpFlags[i] = bottomUpLevels.get(i) == 1;
+        }
+        Result result = new Result(dist, levelSizes.toArray(), bottomUpFlags);
+        PipelineMetrics.endTraversal(event, "parallel-bfs", result.getNumReached());
+        return result;
+    }
+
+    /**
+     * Claims the given vertex in the visited bitset.
+     *
+     * @return boolean true if this call marked the vertex, false if it was already visited
+     */
+    private static boolean claim(AtomicLongArray visited, int v) {
+        int word = v >>> 6;
+        long bit = 1L << v;
+        long old = visited.get(word);
+        while ((old & bit) == 0) {
+            if (visited.compareAndSet(word, old, old | bit)) {
+                return true;
+            }
+            old = visited.get(word);
+        }
+        return false;
+    }
+
+    /**
+     * TopDownTask expands a slice of the frontier, splitting it until each task has a small slice.
+     */
+    private class TopDownTask extends RecursiveTask<IntList> {
+
+        private static final long serialVersionUID = 1L;
+
+        // instance variables
+        private final int[] frontier;
+        private final int lo;
+        private final int hi;
+        private final AtomicLongArray visited;
+        private final int[] dist;
+        private final int level;
+
+        TopDownTask(int[] frontier, int lo, int hi, AtomicLongArray visited, int[] dist, int level) {
+            this.frontier = frontier;
+            this.lo = lo;
+            this.hi = hi;
+            this.visited = visited;
+            this.dist = dist;
+            this.level = level;
+        }
+
+        protected IntList compute() {
+            if (this.hi - this.lo > THRESHOLD) {
+                int mid = (this.lo + this.hi) >>> 1;
+                TopDownTask left = new TopDownTask(this.frontier, this.lo, mid, this.visited, this.dist, this.level);
+                left.fork();
+                IntList right = new TopDownTask(this.frontier, mid, this.hi, this.visited, this.dist, this.level).compute();
+                IntList next = left.join();
+                for (int i = 0; i < right.size(); i++) {
+                    next.add(right.get(i));
+                }
+                return next;
+            }
+
+            int[] offsets = csr.getOffsets();
+            int[] targets = csr.getTargets();
+            IntList next = new IntList();
+            for (int f = this.lo; f < this.hi; f++) {
+                int v = this.frontier[f];
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    int w = targets[i];
+                    if (claim(this.visited, w)) {
+                        this.dist[w] = this.level;
+                        next.add(w);
+                    }
+                }
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Expands one level bottom-up: every unvisited vertex scans its predecessors for one in the frontier.
+     * Vertex ranges are split on 64-vertex boundaries so each bitset word has a single writer.
+     */
+    private int[] bottomUpStep(int[] frontier, AtomicLongArray visited, int[] dist, int level) {
+        if (this.reverse == null) {
+            this.reverse = this.csr.transpose();
+        }
+        int n = this.csr.getNumVertices();
+        long[] inFrontier = new long[(n + 63) >>> 6];
+        for (int v : frontier) {
+            inFrontier[v >>> 6] |= 1L << v;
+        }
+        long[] next = new long[inFrontier.length];
+        this.pool.invoke(new BottomUpTask(0, inFrontier.length, inFrontier, next, visited, dist, level));
+
+        IntList result = new IntList();
+        for (int word = 0; word < next.length; word++) {
+            long bits = next[word];
+            while (bits != 0) {
+                result.add((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * BottomUpTask checks the unvisited vertices in a range of bitset words.
+     */
+    private class BottomUpTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        // instance variables
+        private final int loWord;
+        private final int hiWord;
+        private final long[] inFrontier;
+        private final long[] next;
+        private final AtomicLongArray visited;
+        private final int[] dist;
+        private final int level;
+
+        BottomUpTask(int loWord, int hiWord, long[] inFrontier, long[] next, AtomicLongArray visited, int[] dist, int level) {
+            this.loWord = loWord;
+            this.hiWord = hiWord;
+            this.inFrontier = inFrontier;
+            this.next = next;
+            this.visited = visited;
+            this.dist = dist;
+            this.level = level;
+        }
+
+        protected void compute() {
+            if ((this.hiWord - this.loWord) * 64 > THRESHOLD) {
+                int mid = (this.loWord + this.hiWord) >>> 1;
+                invokeAll(new BottomUpTask(this.loWord, mid, this.inFrontier, this.next, this.visited, this.dist, this.level),
+                    new BottomUpTask(mid, this.hiWord, this.inFrontier, this.next, this.visited, this.dist, this.level));
+                return;
+            }
+
+            int[] offsets = reverse.getOffsets();
+            int[] sources = reverse.getTargets();
+            int n = csr.getNumVertices();
+            for (int word = this.loWord; word < this.hiWord; word++) {
+                long unvisited = ~this.visited.get(word);
+                long found = 0;
+                while (unvisited != 0) {
+                    int v = (word << 6) + Long.numberOfTrailingZeros(unvisited);
+                    unvisited &= unvisited - 1;
+                    if (v >= n) {
+                        break;
+                    }
+                    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                        int u = sources[i];
+                        if ((this.inFrontier[u >>> 6] & (1L << u)) != 0) {  // stop at the first parent found
+                            found |= 1L << v;
+                            this.dist[v] = this.level;
+                            break;
+                        }
+                    }
+                }
+                if (found != 0) {
+                    this.next[word] = found;
+                    long old = this.visited.get(word);
+                    while (!this.visited.compareAndSet(word, old, old | found)) {
+                        old = this.visited.get(word);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Main method checks the searches of a generated graph of well over THRESHOLD vertices against
+     * CSRGraph.distancesFrom(), on a pool of 4 threads so the tasks split even on one core.
+     */
+    public static void main(String[] args) throws IOException {
+        File dataFile = File.createTempFile("parallel_bfs", ".tsv");
+        dataFile.deleteOnExit();
+        new BotNetworkGenerator(20000, 4000, 100000, 1.1, 5).write(dataFile.getPath());
+        TweeterCollection tc = new TweeterCollection(dataFile.getPath(), 1);
+        tc.appendRow("loner", "3000001", 1, 1, Collections.singletonList("unshared"));  // a component of its own
+        CSRGraph<String> csr = tc.getSnapshot();
+        ParallelBreadthFirstSearch bfs = new ParallelBreadthFirstSearch(csr, new ForkJoinPool(4));
+
+        int[] expected = new int[csr.getNumVertices()];
+        int matching = 0;
+        int sameCount = 0;
+        int switched = 0;
+        int[] sources = {0, 1, 777, 19999, 20000, 20001, csr.getNumVertices() - 1};  // users, the loner, stories
+        for (int source : sources) {
+            int reached = csr.distancesFrom(source, expected);
+            Result result = bfs.search(source);
+            boolean same = true;
+            for (int v = 0; v < expected.length && same; v++) {
+                same = result.getDistance(v) == expected[v];
+            }
+            matching += same ? 1 : 0;
+            sameCount += result.getNumReached() == reached ? 1 : 0;
+            boolean sawBottomUp = false;
+            boolean switchedBack = false;
+            for (int level = 1; level < result.getLevelSizes().length; level++) {
+                switchedBack |= sawBottomUp && !result.isBottomUp(level);
+                sawBottomUp |= result.isBottomUp(level);
+            }
+            switched += switchedBack ? 1 : 0;
+        }
+        System.out.println("Vertices: \nExpected: more than " + THRESHOLD + " \nGot:" + csr.getNumVertices());
+        System.out.println("\nSearches with the same distances as distancesFrom(): \nExpected: " + sources.length
+            + " \nGot:" + matching);
+        System.out.println("\nSearches with the same number reached: \nExpected: " + sources.length + " \nGot:" + sameCount);
+        System.out.println("\nSearches that went bottom-up and back to top-down: \nExpected: at least 1 \nGot:" + switched);
+        System.out.println("\nReached from the loner: \nExpected: 2 \nGot:" + bfs.search(20000).getNumReached());
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelTSVReader reads the account/story TSV on several threads. The file is cut into chunks at line
+ * boundaries, and each chunk is parsed by its own MappedTSVReader into a RowBuffer. The buffers are then
+ * replayed into the real RowHandler in file order, so the handler sees exactly the same calls as with a
+ * single MappedTSVReader, and the graph it builds has the same vertex IDs whatever the number of threads.
+ * Replaying starts as soon as the first chunk is parsed, while later chunks are still being read.
+ *
+ * ParallelTSVReader.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class ParallelTSVReader {
+
+    private static final int CHUNKS_PER_THREAD = 4;  // extra chunks even out uneven line lengths
+
+    // instance variables
+    private final MappedTSVReader.RowHandler handler;
+    private final int threads;
+    private long rowsRead;
+    private long rowsSkipped;
+
+    /**
+     * RowBuffer keeps the rows of one chunk in flat lists until they can be replayed in order.
+     */
+    private static class RowBuffer implements MappedTSVReader.RowHandler {
+
+        // instance variables
+        private final ArrayList<String> screenNames = new ArrayList<String>();
+        private final ArrayList<String> ids = new ArrayList<String>();
+        private final IntList tweetCounts = new IntList();
+        private final IntList storyCounts = new IntList();
+        private final IntList storyEnds = new IntList();  // index just past each row's last story
+        private final ArrayList<String> stories = new ArrayList<String>();
+
+        public void user(String screenName, String id, int tweetCount, int storyCount) {
+            if (this.screenNames.size() > 0) {
+                this.storyEnds.add(this.stories.size());
+            }
+            this.screenNames.add(screenName);
+            this.ids.add(id);
+            this.tweetCounts.add(tweetCount);
+            this.storyCounts.add(storyCount);
+        }
+
+        public void story(String storyId) {
+            this.stories.add(storyId);
+        }
+
+        /**
+         * Passes every buffered row to the given handler in the order it was read.
+         *
+         * @param RowHandler receiver of the rows
+         */
+        void replay(MappedTSVReader.RowHandler target) {
+            if (this.screenNames.size() > 0) {
+                this.storyEnds.add(this.stories.size());
+            }
+            int story = 0;
+            for (int row = 0; row < this.screenNames.size(); row++) {
+                target.user(this.screenNames.get(row), this.ids.get(row), this.tweetCounts.get(row), this.storyCounts.get(row));
+                for (; story < this.storyEnds.get(row); story++) {
+                    target.story(this.stories.get(story));
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor creates a ParallelTSVReader that passes every row to the given handler.
+     *
+     * @param RowHandler receiver of the rows
+     * @param int number of parsing threads
+     */
+    public ParallelTSVReader(MappedTSVReader.RowHandler handler, int threads) {
+        this.handler = handler;
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Getter method for obtaining the number of rows handed to the handler.
+     *
+     * @return long number of rows read
+     */
+    public long getRowsRead() {
+        return this.rowsRead;
+    }
+
+    /**
+     * Getter method for obtaining the number of non-empty lines skipped as malformed.
+     *
+     * @return long number of rows skipped
+     */
+    public long getRowsSkipped() {
+        return this.rowsSkipped;
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @param String name of the TSV file to be read in
+     * @throws IOException if the file cannot be opened, mapped or parsed
+     */
+    public void read(String fileName) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long[] bounds = lineBoundaries(channel, this.threads * CHUNKS_PER_THREAD);
+            ArrayList<Future<MappedTSVReader>> parsed = new ArrayList<Future<MappedTSVReader>>();
+            ArrayList<RowBuffer> buffers = new ArrayList<RowBuffer>();
+
+            for (int c = 0; c + 1 < bounds.length; c++) {
+                RowBuffer buffer = new RowBuffer();
+                long start = bounds[c];
+                long end = bounds[c + 1];
+                buffers.add(buffer);
+                parsed.add(executor.submit(() -> {
+                    MappedTSVReader reader = new MappedTSVReader(buffer);
+                    reader.read(channel, start, end);
+                    return reader;
+                }));
+            }
+
+            for (int c = 0; c < parsed.size(); c++) {  // replay in file order as the chunks finish
+                MappedTSVReader reader = parsed.get(c).get();
+                buffers.get(c).replay(this.handler);
+                buffers.set(c, null);
+                this.rowsRead += reader.getRowsRead();
+                this.rowsSkipped += reader.getRowsSkipped();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + fileName, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to parse " + fileName, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the file into about the given number of chunks, moving each cut forward to the start of a line.
+     *
+     * @return long[] increasing byte positions, starting with 0 and ending with the file size
+     */
+    private static long[] lineBoundaries(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        ArrayList<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        for (int c = 1; c < chunks; c++) {
+            long position = Math.max(size * c / chunks, bounds.get(bounds.size() - 1));
+            long cut = -1;
+            while (cut < 0 && position < size) {
+                probe.clear();
+                int n = channel.read(probe, position);
+                for (int i = 0; i < n && cut < 0; i++) {
+                    if (probe.get(i) == '\n') {
+                        cut = position + i + 1;
+                    }
+                }
+                position += Math.max(n, 0);
+                if (n <= 0) {
+                    break;
+                }
+            }
+            if (cut < 0 || cut >= size) {
+                break;
+            }
+            if (cut > bounds.get(bounds.size() - 1)) {
+                bounds.add(cut);
+            }
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Main method reads one generated file on 1 and on 4 threads and checks that the collections match.
+     */
+    public static void main(String[] args) throws IOException {
+        File dataFile = File.createTempFile("parallel_tsv", ".tsv");
+        dataFile.deleteOnExit();
+        new BotNetworkGenerator(5000, 2000, 40000, 1.1, 7).write(dataFile.getPath());
+        try (FileWriter writer = new FileWriter(dataFile, true)) {
+            writer.write("malformed\trow\nu5000\t1005000\t3\t1\ts1");  // a skipped line, then no final newline
+        }
+
+        TweeterCollection serial = new TweeterCollection(dataFile.getPath(), 1);
+        TweeterCollection parallel = new TweeterCollection(dataFile.getPath(), 4);
+        System.out.println("getTotalUsers(): \nExpected: " + serial.getTotalUsers() + " \nGot:" + parallel.getTotalUsers());
+        System.out.println("\ngetTotalStories(): \nExpected: " + serial.getTotalStories() + " \nGot:"
+            + parallel.getTotalStories());
+        System.out.println("\ngetTotalTweets(): \nExpected: " + serial.getTotalTweets() + " \nGot:"
+            + parallel.getTotalTweets());
+        System.out.println("\ngetTopWriters(5): \nExpected: " + serial.getTopWriters(5) + " \nGot:"
+            + parallel.getTopWriters(5));
+        System.out.println("\ngetTopTweeters(5): \nExpected: " + serial.getTopTweeters(5) + " \nGot:"
+            + parallel.getTopTweeters(5));
+        System.out.println("\ngetTopStories(5): \nExpected: " + serial.getTopStories(5) + " \nGot:"
+            + parallel.getTopStories(5));
+
+        CSRGraph<String> expected = serial.getSnapshot();
+        CSRGraph<String> got = parallel.getSnapshot();
+        boolean sameLabels = expected.getNumVertices() == got.getNumVertices();
+        for (int v = 0; sameLabels && v < expected.getNumVertices(); v++) {
+            sameLabels = expected.getVertex(v).equals(got.getVertex(v));
+        }
+        System.out.println("\nSame vertex labels: \nExpected: true \nGot:" + sameLabels);
+        System.out.println("\nSame offsets and targets: \nExpected: true \nGot:"
+            + (Arrays.equals(expected.getOffsets(), got.getOffsets()) && Arrays.equals(expected.getTargets(), got.getTargets())));
+
+        MappedTSVReader.RowHandler ignore = new RowBuffer();
+        ParallelTSVReader reader = new ParallelTSVReader(ignore, 4);
+        reader.read(dataFile.getPath());
+        System.out.println("\ngetRowsRead() and getRowsSkipped(): \nExpected: 5001 1 \nGot:" + reader.getRowsRead() + " "
+            + reader.getRowsSkipped());
+    }
+}
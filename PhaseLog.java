@@ -0,0 +1,239 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * PhaseLog records the wall time, peak heap use and garbage collection time of each phase of a run, such as
+ * ingest, export and statistics. The peak usage of every heap pool is reset when a phase begins and read when
+ * it ends, and the collector counters are compared at both ends. Pool peaks can be reached at different
+ * moments, so their sum is an upper bound of the true peak of the heap. Every phase is also recorded as a
+ * JDK Flight Recorder event, see PipelineMetrics.
+ *
+ * PhaseLog.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class PhaseLog {
+
+    /**
+     * Phase holds the measurements of one finished phase.
+     */
+    public static class Phase {
+
+        // instance variables
+        private final String name;
+        private final long wallNanos;
+        private final long peakHeapBytes;
+        private final long gcMillis;
+        private final long gcCount;
+
+        /**
+         * Constructor creates a Phase object and initializes instance variables.
+         *
+         * @param String name of the phase
+         * @param long wall time in nanoseconds
+         * @param long peak heap use in bytes
+         * @param long time spent in garbage collection in milliseconds
+         * @param long number of collections
+         */
+        public Phase(String name, long wallNanos, long peakHeapBytes, long gcMillis, long gcCount) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.peakHeapBytes = peakHeapBytes;
+            this.gcMillis = gcMillis;
+            this.gcCount = gcCount;
+        }
+
+        /**
+         * Getter method for obtaining the name of the phase.
+         *
+         * @return String name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Getter method for obtaining the wall time of the phase.
+         *
+         * @return long nanoseconds
+         */
+        public long getWallNanos() {
+            return this.wallNanos;
+        }
+
+        /**
+         * Getter method for obtaining the peak heap use during the phase.
+         *
+         * @return long bytes
+         */
+        public long getPeakHeapBytes() {
+            return this.peakHeapBytes;
+        }
+
+        /**
+         * Getter method for obtaining the garbage collection time during the phase.
+         *
+         * @return long milliseconds
+         */
+        public long getGcMillis() {
+            return this.gcMillis;
+        }
+
+        /**
+         * Getter method for obtaining the number of collections during the phase.
+         *
+         * @return long number of collections
+         */
+        public long getGcCount() {
+            return this.gcCount;
+        }
+
+        /**
+         * Returns a JSON object with the measurements of this phase.
+         *
+         * @return String JSON text
+         */
+        public String toJson() {
+            return "{\"phase\":\"" + this.name + "\",\"wallMillis\":" + String.format(Locale.ROOT, "%.3f", this.wallNanos / 1e6)
+                + ",\"peakHeapBytes\":" + this.peakHeapBytes + ",\"gcMillis\":" + this.gcMillis
+                + ",\"gcCount\":" + this.gcCount + "}";
+        }
+
+        /**
+         * Returns a string representation of this phase.
+         *
+         * @return String one line of measurements
+         */
+        public String toString() {
+            return String.format("%-12s %10.1f ms %8.1f MB peak heap %8d ms GC (%d collections)", this.name,
+                this.wallNanos / 1e6, this.peakHeapBytes / 1048576.0, this.gcMillis, this.gcCount);
+        }
+    }
+
+    // instance variables
+    private final List<Phase> phases;
+    private final List<MemoryPoolMXBean> heapPools;
+    private final List<GarbageCollectorMXBean> collectors;
+    private String current;
+    private PipelineMetrics.PhaseEvent event;
+    private long startNanos;
+    private long startGcMillis;
+    private long startGcCount;
+
+    /**
+     * Constructor creates an empty PhaseLog.
+     */
+    public PhaseLog() {
+        this.phases = new ArrayList<Phase>();
+        this.heapPools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                this.heapPools.add(pool);
+            }
+        }
+        this.collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    }
+
+    /**
+     * Starts a phase, ending the current one if there is one.
+     *
+     * @param String name of the phase
+     */
+    public void begin(String name) {
+        if (this.current != null) {
+            this.end();
+        }
+        for (MemoryPoolMXBean pool : this.heapPools) {
+            pool.resetPeakUsage();
+        }
+        this.current = name;
+        this.event = new PipelineMetrics.PhaseEvent();
+        this.event.phase = name;
+        this.event.begin();
+        this.startGcMillis = this.gcMillis();
+        this.startGcCount = this.gcCount();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase and records its measurements.
+     */
+    public void end() {
+        if (this.current == null) {
+            return;
+        }
+        long wall = System.nanoTime() - this.startNanos;
+        this.event.commit();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : this.heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        this.phases.add(new Phase(this.current, wall, peak, this.gcMillis() - this.startGcMillis,
+            this.gcCount() - this.startGcCount));
+        this.current = null;
+    }
+
+    /**
+     * Getter method for obtaining the finished phases in the order they ran.
+     *
+     * @return List of Phases
+     */
+    public List<Phase> getPhases() {
+        return this.phases;
+    }
+
+    /**
+     * Returns a JSON array with the measurements of every finished phase.
+     *
+     * @return String JSON text
+     */
+    public String toJson() {
+        StringBuilder s = new StringBuilder("[");
+        for (int i = 0; i < this.phases.size(); i++) {
+            s.append(i > 0 ? "," : "").append(this.phases.get(i).toJson());
+        }
+        return s.append("]").toString();
+    }
+
+    /**
+     * Returns a string representation of this log.
+     *
+     * @return String one line per finished phase
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (Phase phase : this.phases) {
+            s.append(phase).append("\n");
+        }
+        return s.toString();
+    }
+
+    /**
+     * Returns the total collection time of every collector so far.
+     */
+    private long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : this.collectors) {
+            total += Math.max(collector.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total number of collections of every collector so far.
+     */
+    private long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : this.collectors) {
+            total += Math.max(collector.getCollectionCount(), 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * PipelineMetrics holds the instrumentation of the analysis pipeline: counters of the work each stage does,
+ * and JDK Flight Recorder events for phases, ingest, traversals and title fetches.
+ *
+ * Counters are only updated when the JVM is started with -Dtwitter.metrics=true. The flag is read once into
+ * a static final field, so with the flag off the JIT removes the counting code altogether. Counters are
+ * LongAdders, so threads that parse or search in parallel do not contend on them. JFR events cost a check of
+ * a flag unless a recording is running, for example with -XX:StartFlightRecording.
+ *
+ * PipelineMetrics.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public final class PipelineMetrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("twitter.metrics");
+
+    /**
+     * Counter lists the kinds of work that are counted.
+     */
+    public enum Counter {
+        ROWS_PARSED("rowsParsed"),
+        ROWS_SKIPPED("rowsSkipped"),
+        EDGES_ADDED("edgesAdded"),
+        TRAVERSALS("traversals"),
+        VERTICES_VISITED("verticesVisited"),
+        VERTEX_LOOKUPS("vertexLookups"),
+        TITLE_FETCHES("titleFetches"),
+        TITLE_FETCH_FAILURES("titleFetchFailures");
+
+        // instance variables
+        private final String key;
+        private final LongAdder count;
+
+        Counter(String key) {
+            this.key = key;
+            this.count = new LongAdder();
+        }
+
+        /**
+         * Getter method for obtaining the current value of this counter.
+         *
+         * @return long count so far
+         */
+        public long get() {
+            return this.count.sum();
+        }
+    }
+
+    /**
+     * PhaseEvent records one phase of a PhaseLog.
+     */
+    @Name("twitter.Phase")
+    @Label("Pipeline Phase")
+    @Category("Twitter Pipeline")
+    @Description("A phase of the analysis pipeline, such as ingest or export")
+    public static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+    }
+
+    /**
+     * IngestEvent records the reading of a data file or of appended rows.
+     */
+    @Name("twitter.Ingest")
+    @Label("Ingest")
+    @Category("Twitter Pipeline")
+    public static class IngestEvent extends Event {
+        @Label("Source")
+        String source;
+
+        @Label("Rows Parsed")
+        long rows;
+
+        @Label("Rows Skipped")
+        long skipped;
+    }
+
+    /**
+     * TraversalEvent records one graph search.
+     */
+    @Name("twitter.Traversal")
+    @Label("Traversal")
+    @Category("Twitter Pipeline")
+    public static class TraversalEvent extends Event {
+        @Label("Kind")
+        String kind;
+
+        @Label("Vertices Visited")
+        int visited;
+    }
+
+    /**
+     * TitleFetchEvent records one HTTP request for a story title.
+     */
+    @Name("twitter.TitleFetch")
+    @Label("Story Title Fetch")
+    @Category("Twitter Pipeline")
+    public static class TitleFetchEvent extends Event {
+        @Label("Story ID")
+        String storyId;
+
+        @Label("HTTP Status")
+        int status;
+    }
+
+    /**
+     * Constructor is private because PipelineMetrics only has static members.
+     */
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Adds to a counter if metrics are enabled.
+     *
+     * @param Counter counter to add to
+     * @param long amount to add
+     */
+    public static void add(Counter counter, long amount) {
+        if (ENABLED) {
+            counter.count.add(amount);
+        }
+    }
+
+    /**
+     * Starts timing a traversal.
+     *
+     * @return TraversalEvent to be passed to endTraversal()
+     */
+    public static TraversalEvent startTraversal() {
+        TraversalEvent event = new TraversalEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Counts a finished traversal and commits its event.
+     *
+     * @param TraversalEvent event returned by startTraversal()
+     * @param String kind of search, such as "bfs"
+     * @param int number of vertices the search reached
+     */
+    public static void endTraversal(TraversalEvent event, String kind, int visited) {
+        if (ENABLED) {
+            Counter.TRAVERSALS.count.increment();
+            Counter.VERTICES_VISITED.count.add(visited);
+        }
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.visited = visited;
+            event.commit();
+        }
+    }
+
+    /**
+     * Sets every counter back to 0.
+     */
+    public static void reset() {
+        for (Counter counter : Counter.values()) {
+            counter.count.reset();
+        }
+    }
+
+    /**
+     * Returns a JSON object with the value of every counter.
+     *
+     * @return String JSON text
+     */
+    public static String countersToJson() {
+        StringBuilder s = new StringBuilder("{\"enabled\":").append(ENABLED);
+        for (Counter counter : Counter.values()) {
+            s.append(",\"").append(counter.key).append("\":").append(counter.get());
+        }
+        return s.append("}").toString();
+    }
+
+    /**
+     * Returns the timing summary of a run: the phases of the given log and the counters.
+     *
+     * @param PhaseLog log of the run
+     * @return String JSON text
+     */
+    public static String summary(PhaseLog log) {
+        return "{\"phases\":" + log.toJson() + ",\"counters\":" + countersToJson() + "}";
+    }
+}
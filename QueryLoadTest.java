@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueryLoadTest sends a mix of queries to a running QueryService from many client threads at once and
+ * reports the throughput and latency percentiles. Vertex names are drawn from the top users and stories the
+ * service itself reports, so the test works against any data file. The client threads are virtual where the
+ * JVM has them, like the threads of the service.
+ *
+ * QueryLoadTest.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class QueryLoadTest {
+
+    // instance variables
+    private final String base;
+    private final HttpClient client;
+    private final List<String> users;
+    private final List<String> stories;
+
+    /**
+     * Constructor creates a QueryLoadTest against the service at the given address and fetches the names
+     * to query.
+     *
+     * @param String base URL of the service, such as http://localhost:8080
+     * @throws IOException if the service cannot be reached
+     * @throws InterruptedException if interrupted while waiting for the service
+     */
+    public QueryLoadTest(String base) throws IOException, InterruptedException {
+        this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.users = this.names("/top/users?k=200", "user");
+        this.stories = this.names("/top/stories?k=200", "story");
+        if (this.users.isEmpty() || this.stories.isEmpty()) {
+            throw new IOException("The service at " + base + " has no users or stories");
+        }
+    }
+
+    /**
+     * Sends the given number of requests from the given number of client threads.
+     *
+     * @param int number of concurrent clients
+     * @param int total number of requests
+     * @return String summary of the throughput, the latencies and the failures
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public String run(int clients, int total) throws InterruptedException {
+        long[] latencies = new long[total];
+        AtomicLong next = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        ExecutorService executor = QueryService.newExecutor();
+        List<Future<?>> running = new ArrayList<Future<?>>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            running.add(executor.submit(() -> {
+                for (int i = (int) next.getAndIncrement(); i < total; i = (int) next.getAndIncrement()) {
+                    long sent = System.nanoTime();
+                    if (!this.send(this.randomQuery(random))) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                }
+            }));
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                System.out.println(e);
+            }
+        }
+        long wall = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        Arrays.sort(latencies);
+        return String.format("%d requests from %d clients in %.2f s: %.0f requests/s, latency p50 %.2f ms, "
+            + "p99 %.2f ms, max %.2f ms, %d failures", total, clients, wall / 1e9, total / (wall / 1e9),
+            latencies[total / 2] / 1e6, latencies[(int) (total * 0.99)] / 1e6, latencies[total - 1] / 1e6, failures.get());
+    }
+
+    /**
+     * Returns a random query from the mix: mostly neighbourhood and component lookups, some paths, top
+     * lists and similarity searches.
+     */
+    private String randomQuery(Random random) {
+        String user = encode(this.users.get(random.nextInt(this.users.size())));
+        String story = encode(this.stories.get(random.nextInt(this.stories.size())));
+        int kind = random.nextInt(10);
+        if (kind < 3) {
+            return "/neighbors?type=user&vertex=" + user;
+        } else if (kind < 5) {
+            return "/predecessors?type=story&vertex=" + story;
+        } else if (kind < 7) {
+            return "/component?type=user&limit=20&vertex=" + user;
+        } else if (kind < 8) {
+            String other = encode(this.users.get(random.nextInt(this.users.size())));
+            return "/path?type=user&from=" + user + "&to=" + other;
+        } else if (kind < 9) {
+            return random.nextBoolean() ? "/top/stories?k=10" : "/top/users?k=10&by=tweets";
+        }
+        return "/similar?k=5&user=" + user;
+    }
+
+    /**
+     * Sends one request and returns a boolean indicating whether it succeeded.
+     */
+    private boolean send(String pathAndQuery) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(this.base + pathAndQuery)).GET().build();
+            return this.client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the values of the given field in the JSON list returned by a top query.
+     */
+    private List<String> names(String pathAndQuery, String field) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(this.base + pathAndQuery)).GET().build();
+        String body = this.client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        List<String> names = new ArrayList<String>();
+        String key = "\"" + field + "\":\"";
+        for (int i = body.indexOf(key); i >= 0; i = body.indexOf(key, i + 1)) {
+            int from = i + key.length();
+            StringBuilder name = new StringBuilder();
+            for (int j = from; body.charAt(j) != '"'; j++) {
+                char c = body.charAt(j);
+                if (c == '\\') {
+                    c = body.charAt(++j);  // names with control characters are not worth decoding here
+                }
+                name.append(c);
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    /**
+     * Encodes a name for a query string.
+     */
+    private static String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Main method loads a data file into an embedded QueryService and runs the load test against it, or
+     * runs it against a service that is already running: data file or base URL, then optionally the number
+     * of clients and of requests.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String target = args.length > 0 ? args[0] : "All_Russian-Accounts-in-TT-stories.csv.tsv";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int total = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        QueryService service = null;
+        String base = target;
+        if (!target.startsWith("http")) {
+            TweeterCollection tc = new TweeterCollection(target);
+            service = new QueryService(tc);
+            service.start(0);
+            base = "http://localhost:" + service.getPort();
+        }
+        try {
+            QueryLoadTest test = new QueryLoadTest(base);
+            test.run(clients, Math.min(total, 1000));  // warm up the JIT on both sides
+            System.out.println(test.run(clients, total));
+        } finally {
+            if (service != null) {
+                service.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,520 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueryService answers questions about a loaded TweeterCollection over HTTP, with JSON replies, so the graph
+ * is loaded once and then queried as often as needed. Every endpoint takes GET parameters:
+ *
+ *   /                                  totals of the collection and the number of requests served
+ *   /neighbors?vertex=NAME             vertices an arc leads to from NAME
+ *   /predecessors?vertex=NAME          vertices with an arc leading to NAME
+ *   /component?vertex=NAME&limit=100   connected component of NAME, with up to limit members
+ *   /path?from=NAME&to=NAME            a shortest path between two vertices
+ *   /top/stories?k=10                  stories shared by the most users
+ *   /top/users?k=10&by=stories         users with the most stories, or the most tweets with by=tweets
+ *   /similar?user=NAME&k=10            accounts whose stories are most like those of NAME
+ *
+ * A vertex is looked up as a screen name first and then as a story ID, unless type=user or type=story is
+ * given. Each request runs on a virtual thread where the JVM has them (Java 21 and later), and on a cached
+ * thread pool otherwise.
+ *
+ * Rows can be appended to the collection while the service runs. Graph queries read the latest snapshot of
+ * the collection's live graph, see TweeterCollection.getLiveGraph(), together with its transpose and component
+ * labels, which the first request to see a new version rebuilds, so a traversal never waits for ingest. The
+ * totals, leaderboards and similarity index are read while holding the collection's lock, which the append
+ * methods hold too.
+ *
+ * QueryService.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class QueryService {
+
+    private static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * View holds a snapshot of the live graph and the arrays derived from it, so that a request reads them
+     * all at the same version.
+     */
+    private static class View {
+
+        // instance variables
+        private final long version;
+        private final CSRGraph<String> graph;
+        private final CSRGraph<String> reverse;
+        private final int[] componentOf;
+        private final int[] componentSize;
+
+        /**
+         * Constructor creates a View of the given snapshot, with its transpose and component labels.
+         *
+         * @param ConcurrentGraph.Snapshot<String> snapshot of the live graph
+         */
+        View(ConcurrentGraph.Snapshot<String> snapshot) {
+            this.version = snapshot.getVersion();
+            this.graph = snapshot.getGraph();
+            this.reverse = this.graph.transpose();
+            this.componentOf = ConnectedComponents.of(this.graph).getComponentIds();
+            int components = 0;
+            for (int c : this.componentOf) {
+                components = Math.max(components, c + 1);
+            }
+            this.componentSize = new int[components];
+            for (int c : this.componentOf) {
+                this.componentSize[c]++;
+            }
+        }
+    }
+
+    // instance variables
+    private final TweeterCollection tc;
+    private final ConcurrentGraph<String> live;
+    private volatile View view;
+    private final Object viewLock;
+    private final LongAdder requests;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Constructor creates a QueryService over the given collection. The first snapshot, its transpose, the
+     * component labels and the similarity index are built here, so the first queries are as fast as the rest.
+     *
+     * @param TweeterCollection collection to be queried
+     */
+    public QueryService(TweeterCollection tc) {
+        this.tc = tc;
+        this.live = tc.getLiveGraph();
+        this.view = new View(this.live.snapshot());
+        this.viewLock = new Object();
+        synchronized (tc) {
+            tc.getSimilarityIndex();
+        }
+        this.requests = new LongAdder();
+    }
+
+    /**
+     * Starts serving on the given port.
+     *
+     * @param int port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public void start(int port) throws IOException {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");  // else small replies wait 40 ms for a delayed ACK
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newExecutor();
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Stops serving, letting requests in progress finish for up to a second.
+     */
+    public void stop() {
+        if (this.server != null) {
+            this.server.stop(1);
+            this.executor.shutdown();
+            this.server = null;
+        }
+    }
+
+    /**
+     * Getter method for obtaining the port the service listens on.
+     *
+     * @return int port, or -1 if the service is not running
+     */
+    public int getPort() {
+        return this.server == null ? -1 : this.server.getAddress().getPort();
+    }
+
+    /**
+     * Getter method for obtaining the number of requests served so far.
+     *
+     * @return long number of requests
+     */
+    public long getRequestCount() {
+        return this.requests.sum();
+    }
+
+    /**
+     * Returns the view of the latest snapshot of the live graph, rebuilding it if the graph has changed.
+     * Requests that find the same change wait for one rebuild rather than each making their own.
+     */
+    private View view() {
+        View current = this.view;
+        if (current.version == this.live.getVersion()) {
+            return current;
+        }
+        synchronized (this.viewLock) {
+            ConcurrentGraph.Snapshot<String> snapshot = this.live.snapshot();
+            if (this.view.version != snapshot.getVersion()) {
+                this.view = new View(snapshot);
+            }
+            return this.view;
+        }
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task, found by reflection so the class still
+     * compiles and runs on JVMs without them, or a cached thread pool on those JVMs.
+     *
+     * @return ExecutorService for the requests
+     */
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Answers one request, or replies with an error status and message.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        this.requests.increment();
+        int status = 200;
+        String body;
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                throw new QueryException(405, "Only GET is supported");
+            }
+            body = this.answer(exchange.getRequestURI().getPath(), parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (QueryException e) {
+            status = e.status;
+            body = "{\"error\":" + quote(e.getMessage()) + "}";
+        } catch (RuntimeException e) {
+            status = 500;
+            body = "{\"error\":" + quote(e.toString()) + "}";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Returns the JSON answer to the given endpoint and parameters.
+     *
+     * @param String path of the request
+     * @param Map of the query parameters
+     * @return String JSON reply
+     * @throws QueryException if the path is unknown or a parameter is missing or wrong
+     */
+    String answer(String path, Map<String,String> params) {
+        View view = this.view();
+        switch (path) {
+            case "/":
+                synchronized (this.tc) {
+                    return "{\"users\":" + this.tc.getTotalUsers() + ",\"stories\":" + this.tc.getTotalStories()
+                        + ",\"tweets\":" + this.tc.getTotalTweets() + ",\"arcs\":" + view.graph.getNumArcs()
+                        + ",\"components\":" + view.componentSize.length + ",\"requests\":" + this.requests.sum()
+                        + "}";
+                }
+            case "/neighbors":
+                return this.adjacent(view, view.graph, this.vertex(view, params, "vertex"));
+            case "/predecessors":
+                return this.adjacent(view, view.reverse, this.vertex(view, params, "vertex"));
+            case "/component":
+                return this.component(view, this.vertex(view, params, "vertex"),
+                    intParam(params, "limit", DEFAULT_LIMIT));
+            case "/path":
+                return this.path(view, this.vertex(view, params, "from"), this.vertex(view, params, "to"));
+            case "/top/stories":
+                return this.topStories(intParam(params, "k", 10));
+            case "/top/users":
+                return this.topUsers(intParam(params, "k", 10), params.getOrDefault("by", "stories"));
+            case "/similar":
+                return this.similar(required(params, "user"), intParam(params, "k", 10));
+            default:
+                throw new QueryException(404, "Unknown endpoint " + path);
+        }
+    }
+
+    /**
+     * Returns the vertex named by the given parameter, as a vertex ID of the view's snapshot.
+     */
+    private int vertex(View view, Map<String,String> params, String name) {
+        String label = required(params, name);
+        String type = params.getOrDefault("type", "");
+        if (type.equals("user") || type.equals("story")) {
+            synchronized (this.tc) {
+                BipartiteGraph bipartite = this.tc.getBipartiteGraph();
+                if ((type.equals("user") ? bipartite.getUserId(label) : bipartite.getStoryId(label)) < 0) {
+                    throw new QueryException(404, "No " + type + " " + label);
+                }
+            }
+        }
+        int v = this.live.getVertexId(label);
+        if (v < 0 || v >= view.graph.getNumVertices()) {  // or added after the snapshot was taken
+            throw new QueryException(404, "No vertex " + label);
+        }
+        return v;
+    }
+
+    /**
+     * Returns the successors of a vertex in the given graph.
+     */
+    private String adjacent(View view, CSRGraph<String> csr, int v) {
+        StringBuilder s = new StringBuilder("{\"vertex\":").append(quote(view.graph.getVertex(v)))
+            .append(",\"degree\":").append(csr.getOutDegree(v)).append(",\"vertices\":[");
+        int[] offsets = csr.getOffsets();
+        int[] targets = csr.getTargets();
+        for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+            s.append(i > offsets[v] ? "," : "").append(quote(view.graph.getVertex(targets[i])));
+        }
+        return s.append("]}").toString();
+    }
+
+    /**
+     * Returns the component of a vertex with up to limit of its members, nearest first.
+     */
+    private String component(View view, int v, int limit) {
+        int c = view.componentOf[v];
+        StringBuilder s = new StringBuilder("{\"vertex\":").append(quote(view.graph.getVertex(v)))
+            .append(",\"component\":").append(c).append(",\"size\":").append(view.componentSize[c])
+            .append(",\"members\":[");
+        int[] members = nearest(view.graph, v, Math.min(limit, view.componentSize[c]));
+        for (int i = 0; i < members.length; i++) {
+            s.append(i > 0 ? "," : "").append(quote(view.graph.getVertex(members[i])));
+        }
+        return s.append("]}").toString();
+    }
+
+    /**
+     * Returns the first vertices reached by a breadth first search from v, stopping once limit are found.
+     */
+    private static int[] nearest(CSRGraph<String> graph, int v, int limit) {
+        IntList order = new IntList(Math.max(limit, 1));
+        HashSet<Integer> seen = new HashSet<Integer>();  // sized by the limit, not the graph
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        if (limit > 0) {
+            order.add(v);
+            seen.add(v);
+        }
+        for (int head = 0; head < order.size() && order.size() < limit; head++) {
+            int current = order.get(head);
+            for (int i = offsets[current]; i < offsets[current + 1] && order.size() < limit; i++) {
+                if (seen.add(targets[i])) {
+                    order.add(targets[i]);
+                }
+            }
+        }
+        return order.toArray();
+    }
+
+    /**
+     * Returns a shortest path between two vertices.
+     */
+    private String path(View view, int from, int to) {
+        StringBuilder s = new StringBuilder("{\"from\":").append(quote(view.graph.getVertex(from)))
+            .append(",\"to\":").append(quote(view.graph.getVertex(to)));
+        if (view.componentOf[from] != view.componentOf[to]) {
+            return s.append(",\"length\":-1,\"path\":[]}").toString();
+        }
+        int[] path = view.graph.shortestPath(from, to);
+        s.append(",\"length\":").append(path.length - 1).append(",\"path\":[");
+        for (int i = 0; i < path.length; i++) {
+            s.append(i > 0 ? "," : "").append(quote(view.graph.getVertex(path[i])));
+        }
+        return s.append("]}").toString();
+    }
+
+    /**
+     * Returns the k stories shared by the most users.
+     */
+    private String topStories(int k) {
+        StringBuilder s = new StringBuilder("[");
+        synchronized (this.tc) {
+            Leaderboard board = this.tc.getStoryPopularity();
+            int[] top = board.top(k);
+            for (int i = 0; i < top.length; i++) {
+                s.append(i > 0 ? "," : "").append("{\"story\":")
+                    .append(quote(this.tc.getBipartiteGraph().getStory(top[i])))
+                    .append(",\"users\":").append(board.getScore(top[i])).append("}");
+            }
+        }
+        return s.append("]").toString();
+    }
+
+    /**
+     * Returns the k users with the most stories or tweets.
+     */
+    private String topUsers(int k, String by) {
+        if (!by.equals("stories") && !by.equals("tweets")) {
+            throw new QueryException(400, "by must be stories or tweets");
+        }
+        StringBuilder s = new StringBuilder("[");
+        synchronized (this.tc) {
+            Leaderboard board = by.equals("stories") ? this.tc.getUserStoryCounts() : this.tc.getUserTweetCounts();
+            int[] top = board.top(k);
+            for (int i = 0; i < top.length; i++) {
+                s.append(i > 0 ? "," : "").append("{\"user\":")
+                    .append(quote(this.tc.getBipartiteGraph().getUser(top[i])))
+                    .append(",\"").append(by).append("\":").append(board.getScore(top[i])).append("}");
+            }
+        }
+        return s.append("]").toString();
+    }
+
+    /**
+     * Returns the k accounts most similar to the given one.
+     */
+    private String similar(String screenName, int k) {
+        StringBuilder s = new StringBuilder("[");
+        synchronized (this.tc) {
+            BipartiteGraph bipartite = this.tc.getBipartiteGraph();
+            int user = bipartite.getUserId(screenName);
+            if (user < 0) {
+                throw new QueryException(404, "No user " + screenName);
+            }
+            List<MinHashIndex.Match> matches = this.tc.getSimilarityIndex().similarTo(user, k);
+            for (int i = 0; i < matches.size(); i++) {
+                MinHashIndex.Match match = matches.get(i);
+                s.append(i > 0 ? "," : "").append("{\"user\":").append(quote(bipartite.getUser(match.getOther())))
+                    .append(",\"similarity\":").append(String.format(Locale.ROOT, "%.4f", match.getSimilarity()))
+                    .append("}");
+            }
+        }
+        return s.append("]").toString();
+    }
+
+    /**
+     * Splits a raw query string into decoded parameters.
+     */
+    private static Map<String,String> parseQuery(String query) {
+        Map<String,String> params = new HashMap<String,String>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Returns a parameter that must be given.
+     */
+    private static String required(Map<String,String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new QueryException(400, "Missing parameter " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Returns a non-negative int parameter, or the default if it is not given.
+     */
+    private static int intParam(Map<String,String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int n = Integer.parseInt(value);
+            if (n < 0) {
+                throw new NumberFormatException();
+            }
+            return n;
+        } catch (NumberFormatException e) {
+            throw new QueryException(400, name + " must be a non-negative number");
+        }
+    }
+
+    /**
+     * Returns the given string as a JSON string literal.
+     */
+    static String quote(String value) {
+        StringBuilder s = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                s.append('\\').append(c);
+            } else if (c < 0x20) {
+                s.append(String.format("\\u%04x", (int) c));
+            } else {
+                s.append(c);
+            }
+        }
+        return s.append('"').toString();
+    }
+
+    /**
+     * QueryException carries the HTTP status of a request that cannot be answered.
+     */
+    static class QueryException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        // instance variables
+        private final int status;
+
+        /**
+         * Constructor creates a QueryException with a status and a message for the client.
+         *
+         * @param int HTTP status
+         * @param String message
+         */
+        QueryException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Main method loads a data file and serves it until the JVM is stopped: data file, then optionally the port,
+     * then optionally the number of seconds between checks of the data file for appended rows.
+     */
+    public static void main(String[] args) throws IOException {
+        String dataFile = args.length > 0 ? args[0] : "All_Russian-Accounts-in-TT-stories.csv.tsv";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        TweeterCollection tc = new TweeterCollection(dataFile);
+        tc.calculateStoryStats();
+        tc.calculateUserStats();
+        QueryService service = new QueryService(tc);
+        service.start(port);
+        System.out.println("Serving " + tc.getTotalUsers() + " users and " + tc.getTotalStories()
+            + " stories at http://localhost:" + service.getPort() + "/");
+
+        if (args.length > 2) {
+            long seconds = Long.parseLong(args[2]);
+            long[] offset = {Files.size(Paths.get(dataFile))};
+            ScheduledExecutorService follower = Executors.newSingleThreadScheduledExecutor();
+            follower.scheduleWithFixedDelay(() -> offset[0] = tc.appendFile(dataFile, offset[0]), seconds, seconds,
+                TimeUnit.SECONDS);
+            System.out.println("Following " + dataFile + " every " + seconds + " seconds");
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ScaleHarness runs the whole InvestigateDriver pipeline on generated data of increasing size and records the
+ * wall time, peak heap and garbage collection time of every phase. Each size runs in a fresh JVM with the same
+ * class path and heap options as the harness, so the heap left over by one size does not skew the next. The
+ * child writes its PhaseLog as one JSON line, and the harness prints a table and collects the lines into a
+ * results file. Title lookups are skipped, since they measure the network rather than the code.
+ *
+ * ScaleHarness.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class ScaleHarness {
+
+    private static final long[] DEFAULT_SIZES = {10000, 1000000, 10000000};
+    private static final String RESULT = "RESULT ";
+
+    /**
+     * Generates a data file with the given number of edges and investigates it in this JVM.
+     *
+     * @param long number of edges
+     * @param File directory for the data and TGF files
+     * @return PhaseLog with a generate phase followed by the phases of InvestigateDriver
+     * @throws IOException if the data file cannot be written
+     */
+    public static PhaseLog runOnce(long edges, File directory) throws IOException {
+        PhaseLog log = new PhaseLog();
+        File data = new File(directory, "bots-" + edges + ".tsv");
+        File tgf = new File(directory, "bots-" + edges + ".tgf");
+
+        log.begin("generate");
+        BotNetworkGenerator generator = new BotNetworkGenerator((int) Math.max(edges / 10, 100),
+            (int) Math.max(edges / 50, 50), edges, 1.1, 42);
+        generator.plantClusters(10, 20, 30);
+        generator.write(data.getPath());
+        log.end();
+        System.gc();
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));  // the findings are not needed here
+        try {
+            InvestigateDriver.investigate(data.getPath(), tgf.getPath(), false, log);
+        } finally {
+            System.setOut(out);
+        }
+        data.delete();
+        new File(data.getPath() + ".clusters").delete();
+        tgf.delete();
+        return log;
+    }
+
+    /**
+     * Runs one size in a child JVM and returns the JSON line it reported.
+     */
+    private static String fork(long edges, File directory) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("ScaleHarness");
+        command.add("--child");
+        command.add(Long.toString(edges));
+        command.add(directory.getPath());
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    result = line.substring(RESULT.length());
+                } else {
+                    System.out.println("  " + line);
+                }
+            }
+        }
+        int status = process.waitFor();
+        if (result == null) {
+            throw new IOException("Run with " + edges + " edges exited with status " + status);
+        }
+        return result;
+    }
+
+    /**
+     * Main method runs the pipeline at 10K, 1M and 10M edges, or at the sizes given as arguments, and
+     * writes the results to scale-results.json.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 3 && args[0].equals("--child")) {
+            PhaseLog log = runOnce(Long.parseLong(args[1]), new File(args[2]));
+            System.out.print(log);
+            System.out.println(RESULT + "{\"edges\":" + args[1] + ",\"phases\":" + log.toJson() + "}");
+            return;
+        }
+
+        long[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new long[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Long.parseLong(args[i]);
+            }
+        }
+        File directory = new File(System.getProperty("java.io.tmpdir"));
+        try (PrintWriter results = new PrintWriter("scale-results.json")) {
+            results.println("[");
+            boolean written = false;  // a size that failed leaves no entry, so commas follow what was written
+            for (int i = 0; i < sizes.length; i++) {
+                System.out.println("Edges: " + sizes[i]);
+                try {
+                    String result = fork(sizes[i], directory);
+                    results.println((written ? "," : "") + result);
+                    written = true;
+                } catch (IOException e) {
+                    System.out.println(e);
+                }
+            }
+            results.println("]");
+        }
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * StoryTitleCache looks up story titles from the TwitterTrails title service and remembers them. Recently
+ * used titles are kept in a bounded in-memory LRU map. Every fetched title is also appended to a store file
+ * of "id TAB title" lines, which is indexed when the cache is opened, so titles survive restarts and are only
+ * fetched once. Misses in a batch are fetched concurrently by a bounded pool, and every request has connect
+ * and read timeouts. A failed fetch returns an empty title and is not stored, so it is retried next time.
+ *
+ * StoryTitleCache.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class StoryTitleCache {
+
+    // instance variables
+    private final String baseUrl;
+    private final int timeoutMillis;
+    private final LinkedHashMap<String,String> recent;
+    private final HashMap<String,Long> storeIndex;  // story ID -> offset of its title in the store file
+    private final RandomAccessFile store;
+    private final ExecutorService fetchers;
+    private final AtomicInteger fetchCount;
+
+    /**
+     * Constructor creates a StoryTitleCache and indexes the titles already in the store file.
+     *
+     * @param String URL that the story ID is appended to
+     * @param String name of the store file, created if it does not exist
+     * @param int most titles kept in memory
+     * @param int most fetches running at once
+     * @param int connect and read timeout of each fetch in milliseconds
+     * @throws IOException if the store file cannot be opened or read
+     */
+    public StoryTitleCache(String baseUrl, String storeFileName, int capacity, int maxConcurrent, int timeoutMillis) throws IOException {
+        this.baseUrl = baseUrl;
+        this.timeoutMillis = timeoutMillis;
+        this.recent = new LinkedHashMap<String,String>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String,String> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        this.storeIndex = new HashMap<String,Long>();
+        this.store = new RandomAccessFile(new File(storeFileName), "rw");
+        this.fetchers = Executors.newFixedThreadPool(maxConcurrent, r -> {
+            Thread t = new Thread(r, "story-title-fetcher");
+            t.setDaemon(true);
+            return t;
+        });
+        this.fetchCount = new AtomicInteger();
+        this.indexStore();
+    }
+
+    /**
+     * Reads the store file once, 64 KB at a time, and records where each line starts.
+     */
+    private void indexStore() throws IOException {
+        this.store.seek(0);
+        byte[] buffer = new byte[1 << 16];
+        byte[] id = new byte[64];
+        int idLength = 0;
+        boolean inId = true;  // false once the tab of the current line has been passed
+        long lineStart = 0;
+        long position = 0;
+        int read;
+        while ((read = this.store.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++, position++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    lineStart = position + 1;
+                    idLength = 0;
+                    inId = true;
+                } else if (inId && b == '\t') {
+                    if (idLength > 0) {
+                        this.storeIndex.put(new String(id, 0, idLength, StandardCharsets.UTF_8), lineStart);
+                    }
+                    inId = false;
+                } else if (inId) {
+                    if (idLength == id.length) {
+                        id = Arrays.copyOf(id, idLength * 2);
+                    }
+                    id[idLength++] = b;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the store line starting at the given offset, a block at a time.
+     */
+    private String readStoreLine(long offset) throws IOException {
+        this.store.seek(offset);
+        byte[] buffer = new byte[256];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, length * 2);
+            }
+            int read = this.store.read(buffer, length, buffer.length - length);
+            if (read <= 0) {
+                break;
+            }
+            int limit = length + read;
+            while (length < limit && buffer[length] != '\n') {
+                length++;
+            }
+            if (length < limit) {  // found the end of the line
+                break;
+            }
+        }
+        if (length > 0 && buffer[length - 1] == '\r') {
+            length--;
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Getter method for obtaining the number of HTTP fetches made by this cache.
+     *
+     * @return int number of fetches
+     */
+    public int getFetchCount() {
+        return this.fetchCount.get();
+    }
+
+    /**
+     * Returns the title of the given story, fetching it only if it is neither in memory nor in the store.
+     *
+     * @param String ID of the story
+     * @return String title of the story, or an empty String if it could not be fetched
+     */
+    public String getTitle(String storyId) {
+        return this.getTitles(Arrays.asList(storyId)).get(storyId);
+    }
+
+    /**
+     * Returns the titles of the given stories. Titles not yet known are fetched concurrently.
+     *
+     * @param Collection of story IDs
+     * @return Map from each story ID to its title, empty for stories that could not be fetched
+     */
+    public Map<String,String> getTitles(Collection<String> storyIds) {
+        LinkedHashMap<String,String> titles = new LinkedHashMap<String,String>();
+        ArrayList<String> misses = new ArrayList<String>();
+        for (String id : storyIds) {
+            String title = this.lookUp(id);
+            if (title != null) {
+                titles.put(id, title);
+            } else if (!titles.containsKey(id)) {
+                titles.put(id, "");
+                misses.add(id);
+            }
+        }
+
+        List<Future<String>> fetched = new ArrayList<Future<String>>();
+        for (String id : misses) {
+            fetched.add(this.fetchers.submit((Callable<String>) () -> this.fetch(id)));
+        }
+        for (int i = 0; i < misses.size(); i++) {
+            try {
+                String title = fetched.get(i).get();
+                if (!title.isEmpty()) {
+                    this.remember(misses.get(i), title);
+                    titles.put(misses.get(i), title);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.out.println(e.getCause());
+            }
+        }
+        return titles;
+    }
+
+    /**
+     * Looks the title up in memory and then in the store file.
+     *
+     * @return String title, or null if it is in neither
+     */
+    private synchronized String lookUp(String storyId) {
+        String title = this.recent.get(storyId);
+        if (title != null) {
+            return title;
+        }
+        Long offset = this.storeIndex.get(storyId);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            String line = this.readStoreLine(offset);
+            title = line.substring(line.indexOf('\t') + 1);
+            this.recent.put(storyId, title);
+            return title;
+        } catch (IOException e) {
+            System.out.println(e);
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the title in memory and appends it to the store file.
+     */
+    private synchronized void remember(String storyId, String title) {
+        this.recent.put(storyId, title);
+        if (this.storeIndex.containsKey(storyId)) {
+            return;
+        }
+        try {
+            long offset = this.store.length();
+            this.store.seek(offset);
+            this.store.write((clean(storyId) + "\t" + clean(title) + "\n").getBytes(StandardCharsets.UTF_8));
+            this.storeIndex.put(storyId, offset);
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Replaces tabs and line breaks so a value fits on one store line.
+     */
+    private static String clean(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Fetches the title of the given story from the title service. The service answers with a header
+     * line followed by the title.
+     *
+     * @return String title of the story, or an empty String if the request failed
+     */
+    private String fetch(String storyId) {
+        this.fetchCount.incrementAndGet();
+        PipelineMetrics.add(PipelineMetrics.Counter.TITLE_FETCHES, 1);
+        PipelineMetrics.TitleFetchEvent event = new PipelineMetrics.TitleFetchEvent();
+        event.begin();
+        event.storyId = storyId;
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(this.baseUrl + URLEncoder.encode(storyId, "UTF-8"));
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(this.timeoutMillis);
+            connection.setReadTimeout(this.timeoutMillis);
+            event.status = connection.getResponseCode();
+            if (event.status != HttpURLConnection.HTTP_OK) {
+                PipelineMetrics.add(PipelineMetrics.Counter.TITLE_FETCH_FAILURES, 1);
+                return "";
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                reader.readLine();
+                String title = reader.readLine();
+                return title == null ? "" : title.trim();
+            }
+        } catch (IOException e) {
+            System.out.println(e);
+            PipelineMetrics.add(PipelineMetrics.Counter.TITLE_FETCH_FAILURES, 1);
+            return "";
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * Stops the fetch threads and closes the store file.
+     */
+    public synchronized void close() {
+        this.fetchers.shutdownNow();
+        try {
+            this.store.close();
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Main method for testing against a local stub of the title service.
+     */
+    public static void main(String[] args) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/title", exchange -> {
+            String id = exchange.getRequestURI().getQuery().substring("id=".length());
+            byte[] body = ("<header>\nTitle of story " + id + "\n").getBytes(StandardCharsets.UTF_8);
+            int status = id.equals("missing") ? 404 : 200;
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/title?id=";
+        File storeFile = File.createTempFile("story_titles", ".tsv");
+        storeFile.deleteOnExit();
+
+        StoryTitleCache cache = new StoryTitleCache(url, storeFile.getPath(), 2, 4, 2000);
+        System.out.println("getTitle(): \nExpected: Title of story 17 \nGot:" + cache.getTitle("17"));
+        System.out.println("\ngetTitles(): \nExpected: {17=Title of story 17, 18=Title of story 18, 19=Title of story 19, missing=} \nGot:"
+            + cache.getTitles(Arrays.asList("17", "18", "19", "missing")));
+        System.out.println("\ngetFetchCount(): \nExpected: 4 \nGot:" + cache.getFetchCount());
+        cache.close();
+
+        StoryTitleCache reopened = new StoryTitleCache(url, storeFile.getPath(), 2, 4, 2000);
+        System.out.println("\ngetTitles() after reopening: \nExpected: {17=Title of story 17, 18=Title of story 18} \nGot:"
+            + reopened.getTitles(Arrays.asList("17", "18")));
+        System.out.println("\ngetFetchCount() after reopening: \nExpected: 0 \nGot:" + reopened.getFetchCount());
+        reopened.close();
+        server.stop(0);
+    }
+}
@@ -0,0 +1,181 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * StringDictionary interns strings such as screen names and story IDs, giving each distinct string a dense
+ * int code from 0 in the order it was first added. The strings are stored once, as UTF-8 bytes packed one
+ * after another into a single byte arena, with an int array of where each one starts. Codes are found by
+ * open addressing with linear probing in an int table of at most half full, so the dictionary holds no
+ * object per string: about the length of the string plus 16 bytes each, instead of the 60 to 100 bytes of
+ * a String, its array and a Hashtable entry.
+ *
+ * Strings are decoded again by get(), so callers that need the same string many times should keep it.
+ *
+ * StringDictionary.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class StringDictionary {
+
+    // instance variables
+    private byte[] arena;  // UTF-8 bytes of every string, in code order
+    private int arenaSize;
+    private int[] starts;  // string c is arena[starts[c]] to arena[starts[c + 1]]
+    private int[] hashes;  // hash of each string, so the table can grow without rehashing bytes
+    private int[] table;  // code + 1 of the string in each slot, 0 if the slot is empty
+    private int size;
+
+    /**
+     * Constructor creates an empty StringDictionary.
+     */
+    public StringDictionary() {
+        this(16);
+    }
+
+    /**
+     * Constructor creates an empty StringDictionary with room for the given number of strings.
+     *
+     * @param int expected number of strings
+     */
+    public StringDictionary(int capacity) {
+        capacity = Math.max(capacity, 4);
+        this.arena = new byte[capacity * 8];
+        this.starts = new int[capacity + 1];
+        this.hashes = new int[capacity];
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.size = 0;
+    }
+
+    /**
+     * Getter method for obtaining the number of strings in this dictionary.
+     *
+     * @return int number of strings
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter method for obtaining the memory held by this dictionary's arrays.
+     *
+     * @return long bytes allocated for the arena, the offsets, the hashes and the table
+     */
+    public long getByteSize() {
+        return this.arena.length + 4L * (this.starts.length + this.hashes.length + this.table.length);
+    }
+
+    /**
+     * Adds the given string, if it is not already in this dictionary.
+     *
+     * @param String string to be interned
+     * @return int code of the string
+     */
+    public int add(String s) {
+        byte[] key = s.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        int slot = this.find(key, hash);
+        if (this.table[slot] != 0) {
+            return this.table[slot] - 1;
+        }
+
+        int code = this.size;
+        if (code == this.hashes.length) {
+            this.hashes = Arrays.copyOf(this.hashes, code * 2);
+            this.starts = Arrays.copyOf(this.starts, code * 2 + 1);
+        }
+        if (this.arenaSize + key.length > this.arena.length) {
+            this.arena = Arrays.copyOf(this.arena, Math.max(this.arena.length * 2, this.arenaSize + key.length));
+        }
+        System.arraycopy(key, 0, this.arena, this.arenaSize, key.length);
+        this.arenaSize += key.length;
+        this.starts[code + 1] = this.arenaSize;
+        this.hashes[code] = hash;
+        this.table[slot] = code + 1;
+        this.size++;
+        if (this.size * 2 > this.table.length) {
+            this.grow();
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of the given string.
+     *
+     * @param String string to be looked up
+     * @return int code of the string, or -1 if it is not in this dictionary
+     */
+    public int find(String s) {
+        byte[] key = s.getBytes(StandardCharsets.UTF_8);
+        return this.table[this.find(key, hash(key))] - 1;
+    }
+
+    /**
+     * Returns the string with the given code.
+     *
+     * @param int code of the string
+     * @return String decoded from the arena
+     */
+    public String get(int code) {
+        if (code < 0 || code >= this.size) {
+            throw new IndexOutOfBoundsException("Code: " + code + ", Size: " + this.size);
+        }
+        return new String(this.arena, this.starts[code], this.starts[code + 1] - this.starts[code], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns every string in code order.
+     *
+     * @return String[] strings, where entry c has code c
+     */
+    public String[] toArray() {
+        String[] strings = new String[this.size];
+        for (int c = 0; c < this.size; c++) {
+            strings[c] = this.get(c);
+        }
+        return strings;
+    }
+
+    /**
+     * Returns the slot that holds the given key, or the empty slot where it would be added.
+     */
+    private int find(byte[] key, int hash) {
+        int mask = this.table.length - 1;
+        int slot = hash & mask;
+        while (this.table[slot] != 0) {
+            int code = this.table[slot] - 1;
+            if (this.hashes[code] == hash && Arrays.equals(this.arena, this.starts[code], this.starts[code + 1], key, 0, key.length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table and puts every code back in it.
+     */
+    private void grow() {
+        this.table = new int[this.table.length * 2];
+        int mask = this.table.length - 1;
+        for (int code = 0; code < this.size; code++) {
+            int slot = this.hashes[code] & mask;
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = code + 1;
+        }
+    }
+
+    /**
+     * Returns the FNV-1a hash of the given bytes, with the high bits mixed into the low ones.
+     */
+    private static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (byte b : key) {
+            h = (h ^ (b & 0xff)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
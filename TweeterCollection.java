@@ -1,21 +1,28 @@
-import java.util.Hashtable;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
-import java.util.Vector;
+import java.nio.file.NoSuchFileException;
 
-import sun.rmi.transport.tcp.TCPConnection;
-
-import java.util.LinkedList;
+import java.util.List;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Collection;
 import java.io.IOException;
-import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
- * TweeterCollection contains a Graph of screen names and stories, Hashtable of screen names 
- * and its corresponding Twitter user, and a Hashtable of stories and its reference 
- * frequency. It also reads in data on the graph components from a CSV and synthesizes 
- * additional data to be further analyzed.
+ * TweeterCollection contains a BipartiteGraph of users and the stories they shared, and a UserTable 
+ * with the columns of each Twitter user's data, indexed by the user's ID in the graph. It also reads in 
+ * data on the graph components from a CSV and synthesizes additional data to be further analyzed.
+ * Results of the expensive analyses are kept in an AnalysisCache until the next row is added.
+ *
+ * Once getLiveGraph() has been called, every user, story and share added is also written to a
+ * ConcurrentGraph, so QueryService can keep answering graph queries on its snapshots while rows are appended.
+ * The append methods are synchronized on the collection, and a reader of any other part of it must hold the
+ * same lock while rows may be appended.
  *
  * TweeterCollection.java
  * @author Alexandra Bullen-Smith
@@ -26,9 +33,20 @@ import java.net.URL;
 public class TweeterCollection {
     
     // instance variables
+    private BipartiteGraph bipartite;
     private AdjListsGraph<String> graph;
-    private Hashtable<String,TweeterUser> userTable;
-    private Hashtable<String,Integer> storyTable;
+    private CSRGraph<String> snapshot;
+    private ConcurrentGraph<String> liveGraph;  // copy of the graph for concurrent readers, once asked for
+    private ConnectedComponents components;
+    private IntList userNodes;  // node of each user in components
+    private IntList storyNodes;  // node of each story in components
+    private ClosenessCentrality centrality;
+    private MinHashIndex similarityIndex;
+    private boolean similarityStale;  // true if rows were appended since the index was last built
+    private UserTable userTable;
+    private Leaderboard storyPopularity;  // users per story
+    private Leaderboard userStoryCounts;  // stories per user
+    private Leaderboard userTweetCounts;  // tweets per user
     private int totalStories;
     private int totalTweets;
     private int totalUsers;
@@ -36,29 +54,239 @@ public class TweeterCollection {
     private String leastPopStory;
     private String mostActiveWriter;
     private String mostActiveTweeter;
+    private StoryTitleCache titleCache;
+    private AnalysisCache analyses;
+    private long version;  // number of changes to the users, stories and shares so far
     private String urlFindStoryTitle = "http://twittertrails.wellesley.edu/~trails/stories/title.php?id=";
 
     /**
-     * Constructor creates a CollectionOfRats object and initializes instance variables.
+     * Constructor creates an empty TweeterCollection object that is filled by the append methods.
+     */
+    public TweeterCollection() {
+        this.bipartite = new BipartiteGraph();
+        this.components = new ConnectedComponents();
+        this.userNodes = new IntList();
+        this.storyNodes = new IntList();
+        this.userTable = new UserTable();
+        this.storyPopularity = new Leaderboard();
+        this.userStoryCounts = new Leaderboard();
+        this.userTweetCounts = new Leaderboard();
+        this.analyses = new AnalysisCache(64);
+        this.version = 0;
+    }
+
+    /**
+     * Constructor creates a TweeterCollection object and initializes instance variables.
+     * The data file is parsed on every available core.
      * 
      * @param String name of the CSV file containing data to be read in
      */
-    public CollectionOfRats(String csvFileName) {
-        this.graph = new AdjListsGraph<String>();
-        this.userTable = new Hashtable<String, TweeterUser>();
-        this.storyTable = new Hashtable<String, Integer>();
-        this.readTwitterData(csvFileName);
+    public TweeterCollection(String csvFileName) {
+        this(csvFileName, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor creates a TweeterCollection object and initializes instance variables.
+     * The resulting graph is the same for any number of threads.
+     * 
+     * @param String name of the CSV file containing data to be read in
+     * @param int number of threads that parse the file
+     */
+    public TweeterCollection(String csvFileName, int threads) {
+        this();
+        this.readTwitterData(csvFileName, threads);
+    }
+
+    /**
+     * Getter method for obtaining the bipartite graph of Twitter users and stories.
+     * 
+     * @return BipartiteGraph of the Twitter data
+     */
+    public BipartiteGraph getBipartiteGraph() {
+        return this.bipartite;
+    }
+
+    /**
+     * Getter method for obtaining the columns of the users' data, indexed by user ID in the bipartite graph.
+     * 
+     * @return UserTable of the Twitter users
+     */
+    public UserTable getUserTable() {
+        return this.userTable;
     }
 
     /**
-     * Getter method for obtaining the entire graph of Twitter users and stories.
+     * Getter method that takes in a screen name and obtains that Twitter user's data.
+     * 
+     * @param String screen name
+     * @return Tweeter built from the user table, or null if there is no such user
+     */
+    public Tweeter getTweeter(String screenName) {
+        int user = this.bipartite.getUserId(screenName);
+        if (!this.userTable.contains(user)) {
+            return null;
+        }
+        return new Tweeter(this.userTable.getTwitterId(user), screenName, this.userTable.getTweetCount(user),
+            this.userTable.getStoryCount(user));
+    }
+
+    /**
+     * Getter method for obtaining the entire graph of Twitter users and stories as an AdjListsGraph.
+     * It is built from the bipartite graph the first time it is needed. A screen name that equals
+     * a story ID is a single vertex in this graph, see BipartiteGraph.toAdjListsGraph().
      * 
      * @return AdjListsGraph of the Twitter data
      */
     public AdjListsGraph<String> getGraph(){
+        if (this.graph == null) {
+            this.graph = this.bipartite.toAdjListsGraph();
+        }
         return this.graph;
     }
 
+    /**
+     * Getter method for obtaining a read-only CSR snapshot of the bipartite graph. The snapshot is frozen
+     * the first time it is needed and shared by every analysis afterwards. Users come first in the
+     * snapshot, so vertex v is a user if v < getTotalUsers() and a story otherwise.
+     * 
+     * @return CSRGraph of the Twitter data
+     */
+    public CSRGraph<String> getSnapshot() {
+        if (this.snapshot == null) {
+            this.snapshot = this.bipartite.freeze();
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Getter method for obtaining a ConcurrentGraph of the users and stories that is kept up to date as rows
+     * are appended. It is filled from the collection the first time it is asked for, users first and then
+     * stories, with an edge for every share. Each vertex is labelled with its screen name or story ID, so a
+     * screen name that equals a story ID becomes a single vertex, as in getGraph().
+     * 
+     * @return ConcurrentGraph of the Twitter data
+     */
+    public synchronized ConcurrentGraph<String> getLiveGraph() {
+        if (this.liveGraph == null) {
+            ConcurrentGraph<String> live = new ConcurrentGraph<String>();
+            for (int u = 0; u < this.bipartite.getNumUsers(); u++) {
+                live.addVertex(this.bipartite.getUser(u));
+            }
+            for (int s = 0; s < this.bipartite.getNumStories(); s++) {
+                live.addVertex(this.bipartite.getStory(s));
+            }
+            for (int u = 0; u < this.bipartite.getNumUsers(); u++) {
+                String screenName = this.bipartite.getUser(u);
+                for (int story : this.bipartite.getStoriesOf(u)) {
+                    live.addEdge(screenName, this.bipartite.getStory(story));
+                }
+            }
+            this.liveGraph = live;
+        }
+        return this.liveGraph;
+    }
+
+    /**
+     * Getter method for obtaining the connected components of the graph, which are kept up to date
+     * as the data is read in.
+     * 
+     * @return ConnectedComponents of the Twitter data
+     */
+    public ConnectedComponents getComponents() {
+        return this.components;
+    }
+
+    /**
+     * Getter method for obtaining the leaderboard of stories by the number of users that shared them.
+     * IDs on the leaderboard are story IDs of the bipartite graph.
+     * 
+     * @return Leaderboard of story popularity
+     */
+    public Leaderboard getStoryPopularity() {
+        return this.storyPopularity;
+    }
+
+    /**
+     * Getter method for obtaining the leaderboard of users by the number of stories they shared.
+     * IDs on the leaderboard are user IDs of the bipartite graph.
+     * 
+     * @return Leaderboard of stories per user
+     */
+    public Leaderboard getUserStoryCounts() {
+        return this.userStoryCounts;
+    }
+
+    /**
+     * Getter method for obtaining the leaderboard of users by their number of tweets.
+     * IDs on the leaderboard are user IDs of the bipartite graph.
+     * 
+     * @return Leaderboard of tweets per user
+     */
+    public Leaderboard getUserTweetCounts() {
+        return this.userTweetCounts;
+    }
+
+    /**
+     * Returns the IDs of the k stories shared by the most users.
+     * 
+     * @param int number of stories wanted
+     * @return List of story IDs from the most to the least popular
+     */
+    public List<String> getTopStories(int k) {
+        List<String> result = new ArrayList<String>();
+        for (int story : this.storyPopularity.top(k)) {
+            result.add(this.bipartite.getStory(story));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the screen names of the k users that shared the most stories.
+     * 
+     * @param int number of users wanted
+     * @return List of screen names from the most to the least active
+     */
+    public List<String> getTopWriters(int k) {
+        List<String> result = new ArrayList<String>();
+        for (int user : this.userStoryCounts.top(k)) {
+            result.add(this.bipartite.getUser(user));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the screen names of the k users with the most tweets.
+     * 
+     * @param int number of users wanted
+     * @return List of screen names from the most to the least active
+     */
+    public List<String> getTopTweeters(int k) {
+        List<String> result = new ArrayList<String>();
+        for (int user : this.userTweetCounts.top(k)) {
+            result.add(this.bipartite.getUser(user));
+        }
+        return result;
+    }
+
+    /**
+     * Getter method for obtaining the version of this collection. It grows with every user, story or
+     * share added, so results computed at one version are still valid while it is unchanged.
+     * 
+     * @return long number of changes so far
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Getter method for obtaining the cache of analysis results, keyed by getVersion().
+     * 
+     * @return AnalysisCache of this collection
+     */
+    public AnalysisCache getAnalysisCache() {
+        return this.analyses;
+    }
+
     /**
      * Getter method for obtaining the number of stories.
      * 
@@ -122,6 +350,32 @@ public class TweeterCollection {
         return this.mostActiveTweeter;
     }
 
+    /**
+     * Getter method for obtaining the cache of story titles. It is opened on first use with its store
+     * in the file story_titles.tsv, unless another cache was set with setStoryTitleCache().
+     * 
+     * @return StoryTitleCache used by getStoryTitle(), or null if the store file cannot be opened
+     */
+    public StoryTitleCache getStoryTitleCache() {
+        if (this.titleCache == null) {
+            try {
+                this.titleCache = new StoryTitleCache(urlFindStoryTitle, "story_titles.tsv", 10000, 8, 5000);
+            } catch(IOException e) {
+                System.out.println(e);
+            }
+        }
+        return this.titleCache;
+    }
+
+    /**
+     * Setter method for replacing the cache of story titles, for example with one pointing at a test server.
+     * 
+     * @param StoryTitleCache cache to be used by getStoryTitle()
+     */
+    public void setStoryTitleCache(StoryTitleCache titleCache) {
+        this.titleCache = titleCache;
+    }
+
     /**
      * Getter method that takes in the ID of a story and obtains its title.
      * 
@@ -129,131 +383,394 @@ public class TweeterCollection {
      * @return title of the story associated with its ID
      */
     public String getStoryTitle(String storyId) {
-        String storyTitle = ""; 
-        try {
-            URL url = new URL(urlFindStoryTitle + storyId);
-            Scanner scan = new Scanner(url.openStream());
-            scan.nextLine();
-            storyTitle = scan.nextLine();
-        } catch(IOException e){
-            System.out.println(e);  
-        }
-        return storyTitle;
+        StoryTitleCache cache = this.getStoryTitleCache();
+        return cache == null ? "" : cache.getTitle(storyId);
+    }
+
+    /**
+     * Getter method that takes in the IDs of several stories and obtains their titles,
+     * fetching the unknown ones concurrently.
+     * 
+     * @param Collection of story IDs
+     * @return Map from each story ID to its title
+     */
+    public Map<String,String> getStoryTitles(Collection<String> storyIds) {
+        StoryTitleCache cache = this.getStoryTitleCache();
+        return cache == null ? new HashMap<String,String>() : cache.getTitles(storyIds);
     }
 
     /**
      * Returns a boolean indicating whether this graph is connected.
      * 
-     * @return boolean true if the size of the LCC equals the number of verties, falseotherwise
+     * @return boolean true if every vertex is in a single connected component, false otherwise
      */
     public boolean isConnected() {
-        return this.findLCCSize() == this.graph.getNumVertices();
+        return this.components.isConnected();
     }
 
     /**
      * Reads in the Twitter data from the CSV file and adds the data 
-     * to the according data structures.
+     * to the according data structures. The file is memory-mapped and scanned
+     * byte by byte, see MappedTSVReader. With more than one thread, chunks of
+     * the file are parsed in parallel and added in file order, see ParallelTSVReader.
      * 
      * @param String name of the CSV file to be read in
+     * @param int number of threads that parse the file
      */
-    private void readTwitterData(String csvFilename) {
+    private void readTwitterData(String csvFilename, int threads) {
+        PipelineMetrics.IngestEvent event = new PipelineMetrics.IngestEvent();
+        event.begin();
+        event.source = csvFilename;
         try {
-            Scanner scan = new Scanner(new File(csvFilename));
+            if (threads > 1) {
+                ParallelTSVReader reader = new ParallelTSVReader(new RowBuilder(), threads);
+                reader.read(csvFilename);
+                event.rows = reader.getRowsRead();
+                event.skipped = reader.getRowsSkipped();
+            } else {
+                MappedTSVReader reader = new MappedTSVReader(new RowBuilder());
+                reader.read(csvFilename);
+                event.rows = reader.getRowsRead();
+                event.skipped = reader.getRowsSkipped();
+            }
+            event.commit();
+        } catch(NoSuchFileException e) {
+            System.out.println("File " + e.getFile() + " not found.");
+        } catch(IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * Appends the complete rows that were added to the data file since the given byte offset, as when
+     * following a file that receives nightly deltas. Only the new rows are read, and the totals, connected
+     * components and leaderboards are updated in place, so the cost is proportional to the delta. A row for
+     * a user already in the collection replaces that user's counts and adds any stories not shared before.
+     * Snapshots and centrality are rebuilt the next time they are asked for.
+     * 
+     * @param String name of the CSV file to be read from
+     * @param long byte offset to start from, 0 for the first call
+     * @return long offset to pass to the next call, or the given offset if the file could not be read
+     */
+    public synchronized long appendFile(String csvFilename, long offset) {
+        PipelineMetrics.IngestEvent event = new PipelineMetrics.IngestEvent();
+        event.begin();
+        event.source = csvFilename;
+        try (FileChannel channel = FileChannel.open(Paths.get(csvFilename), StandardOpenOption.READ)) {
+            MappedTSVReader reader = new MappedTSVReader(new RowBuilder());
+            long newOffset = reader.readAppended(channel, offset);
+            this.appended();
+            event.rows = reader.getRowsRead();
+            event.skipped = reader.getRowsSkipped();
+            event.commit();
+            return newOffset;
+        } catch(NoSuchFileException e) {
+            System.out.println("File " + e.getFile() + " not found.");
+        } catch(IOException e) {
+            System.out.println(e);
+        }
+        return offset;
+    }
 
-            while(scan.hasNextLine()) { // keep scanning until reaches last line of data
-                String line = scan.nextLine();
+    /**
+     * Appends rows in the format of the data file, one per line, handed over in memory.
+     * Rows are merged the same way as in appendFile().
+     * 
+     * @param String lines of tab separated data
+     */
+    public synchronized void appendRows(String rows) {
+        new MappedTSVReader(new RowBuilder()).read(rows.getBytes(StandardCharsets.UTF_8));
+        this.appended();
+    }
 
-                // in each line, split data values separated by tab into array
-                String[] lineArray = line.split("\t"); 
+    /**
+     * Appends a single row of data. The row is merged the same way as in appendFile().
+     * 
+     * @param String screen name
+     * @param String user ID
+     * @param int number of tweets
+     * @param int number of stories
+     * @param Collection of the IDs of the stories the user shared
+     */
+    public synchronized void appendRow(String screenName, String id, int tweetCount, int storyCount, Collection<String> storyIds) {
+        int user = this.addUser(screenName, id, tweetCount, storyCount);
+        for (String storyId : storyIds) {
+            this.addStory(user, storyId);
+        }
+        this.appended();
+    }
 
-                // store each data value in a variable
-                String screenName = lineArray[0];
-                String id = lineArray[1];
-                String tweetCount = lineArray[2];
-                String storyCount = lineArray[3];
+    /**
+     * Drops everything built from the previous state of the graph and refreshes the popularity extremes.
+     */
+    private void appended() {
+        this.graph = null;
+        this.snapshot = null;
+        this.centrality = null;
+        this.similarityStale = true;
+        this.calculateStoryStats();
+        this.calculateUserStats();
+    }
 
-                this.graph.addVertex(screenName);  // add each screen name as a vertex 
+    /**
+     * Writes the graph and the user table to a binary snapshot file that openSnapshot() can load
+     * without parsing the data file again. See GraphSnapshot for the format.
+     * 
+     * @param String name of the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void saveSnapshot(String fileName) throws IOException {
+        int numUsers = this.bipartite.getNumUsers();
+        String[] twitterIds = new String[numUsers];
+        for (int u = 0; u < numUsers; u++) {
+            twitterIds[u] = this.userTable.getTwitterId(u);
+        }
+        GraphSnapshot.write(fileName, this.getSnapshot(), numUsers, twitterIds, this.userTable.getTweetCounts(),
+            this.userTable.getStoryCounts());
+    }
 
-                // create new instance of Tweeter user based on above data values
-                TweeterUser user = new TweeterUser(id, screenName, Integer.parseInt(tweetCount), Integer.parseInt(storyCount));
-                this.userTable.put(screenName,user);  // add user to user table
+    /**
+     * Builds the graph of users that shared the same stories, weighted by the number of stories in common.
+     * Its user IDs match the bipartite graph, so its CSR graph can go straight into ConnectedComponents.of(),
+     * ParallelBreadthFirstSearch or ClosenessCentrality. The result is cached until the next change.
+     * 
+     * @param int fewest shared stories for two users to be joined
+     * @param int most users a story may have to be counted, or 0 for no cap
+     * @return CoSharingProjection.Result with the projected graph and its weights
+     */
+    public CoSharingProjection.Result findCoSharingUsers(int minWeight, int maxFanOut) {
+        return this.analyses.get("coSharingUsers", this.version, () -> new CoSharingProjection(this.getSnapshot(),
+            this.bipartite.getNumUsers()).project(minWeight, maxFanOut), minWeight, maxFanOut);
+    }
 
-                totalTweets += Integer.parseInt(tweetCount);  // accumulate total # of tweets
-                totalUsers++;
+    /**
+     * Getter method for obtaining the MinHash index of the users' story sets. It is built the first time it
+     * is needed, with 128 hash functions in 32 bands, and rebuilt the first time it is needed after an append.
+     * 
+     * @return MinHashIndex of the users
+     */
+    public MinHashIndex getSimilarityIndex() {
+        if (this.similarityIndex == null) {
+            this.similarityIndex = new MinHashIndex(this.getSnapshot(), this.bipartite.getNumUsers(), 128, 32, 42);
+        } else if (this.similarityStale) {
+            this.similarityIndex.rebuild(this.getSnapshot(), this.bipartite.getNumUsers());
+        }
+        this.similarityStale = false;
+        return this.similarityIndex;
+    }
 
-                // split stories separated by comma into array
-                String[] storiesArray = lineArray[4].split(",");
+    /**
+     * Finds the accounts that shared the stories most like those of the given account.
+     * 
+     * @param String screen name of the account
+     * @param int number of accounts wanted
+     * @return List of Matches from the most to the least similar, empty if the account is unknown
+     */
+    public List<MinHashIndex.Match> findSimilarUsers(String screenName, int k) {
+        return this.getSimilarityIndex().similarTo(this.bipartite.getUserId(screenName), k);
+    }
 
-                int numReposted = 0; 
+    /**
+     * Finds every pair of accounts whose story sets have a Jaccard similarity of at least s.
+     * The result is cached until the next change.
+     * 
+     * @param double lowest similarity wanted, best not far below the index threshold of about 0.42
+     * @return List of Matches from the most similar down
+     */
+    public List<MinHashIndex.Match> findSimilarPairs(double s) {
+        return this.analyses.get("similarPairs", this.version,
+            () -> Collections.unmodifiableList(this.getSimilarityIndex().pairsAbove(s)), s);
+    }
 
-                for (int i = 0; i < storiesArray.length; i++) {
-                    if (this.storyTable.containsKey(storiesArray[i])) {
-                        numReposted = this.storyTable.get(storiesArray[i]);
+    /**
+     * Writes the graph of users and stories to a file, optionally only its largest connected component.
+     * 
+     * @param String name of the file to be written out
+     * @param GraphExporter.Format TGF, edge list or GraphML
+     * @param boolean true to gzip the file
+     * @param boolean true to write only the largest connected component
+     * @throws IOException if the file cannot be written
+     */
+    public void exportGraph(String fileName, GraphExporter.Format format, boolean gzip, boolean largestOnly) throws IOException {
+        CSRGraph<String> csr = this.getSnapshot();
+        new GraphExporter(csr).export(fileName, format, gzip, largestOnly ? GraphExporter.largestComponent(csr) : null);
+    }
 
-                        // go to story in hashtable and increment its frequency
-                        this.storyTable.put(storiesArray[i], numReposted++);
-                    } else {
-                        this.storyTable.put(storiesArray[i], 1);  // add story with frequency of 1
-                        totalStories++;
-                        this.graph.addVertex(storiesArray[i]);  // add each story as a vertex
-                    }
+    /**
+     * Loads a TweeterCollection from a snapshot file written by saveSnapshot(). Users and stories keep
+     * their IDs, and the CSR snapshot, the components and the leaderboards are built in bulk from the file
+     * instead of replaying every share, but the dictionaries and adjacency lists are still filled, so the
+     * time grows with the size of the graph. Analyses that only need degrees, neighbours or names can use
+     * GraphSnapshot.open() directly, which loads pages lazily and does not build the collection at all.
+     * 
+     * @param String name of the snapshot file
+     * @param boolean true to check the file's checksum before loading it
+     * @return TweeterCollection with the contents of the file
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static TweeterCollection openSnapshot(String fileName, boolean verify) throws IOException {
+        GraphSnapshot file = GraphSnapshot.open(fileName, verify);
+        CSRGraph<String> csr = file.toCSRGraph();
+        int[] offsets = csr.getOffsets();
+        int[] targets = csr.getTargets();
+        int numUsers = file.getNumUsers();
+        int numStories = file.getNumStories();
+        TweeterCollection tc = new TweeterCollection();
+        for (int u = 0; u < numUsers; u++) {
+            tc.bipartite.addUser(csr.getVertex(u));
+            tc.userNodes.add(u);  // vertex IDs of the snapshot double as the nodes of the components
+            tc.userTable.set(u, file.getTwitterId(u), file.getTweetCount(u), file.getStoryCount(u));
+            tc.totalTweets += file.getTweetCount(u);
+        }
+        for (int s = 0; s < numStories; s++) {
+            tc.bipartite.addStory(csr.getVertex(numUsers + s));
+            tc.storyNodes.add(numUsers + s);
+        }
+        for (int u = 0; u < numUsers; u++) {
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                tc.bipartite.addShare(u, targets[i] - numUsers);
+            }
+        }
+        tc.components = ConnectedComponents.of(csr);
 
-                    // create an edge between each story and its associated screen name
-                    this.graph.addEdge(screenName, storiesArray[i]); 
-                }
+        // each score is set once here, where ingest adds one to it per share
+        for (int u = 0; u < numUsers; u++) {
+            tc.userTweetCounts.update(u, file.getTweetCount(u));
+            tc.userStoryCounts.update(u, tc.bipartite.getUserDegree(u));
+        }
+        for (int s = 0; s < numStories; s++) {
+            if (tc.bipartite.getStoryDegree(s) > 0) {
+                tc.storyPopularity.update(s, tc.bipartite.getStoryDegree(s));
             }
-        } catch(FileNotFoundException e) {
-            System.out.println("File " + e + " not found.");
         }
+        tc.totalUsers = numUsers;
+        tc.totalStories = numStories;
+        tc.version = numUsers + numStories + tc.bipartite.getNumEdges();
+        tc.snapshot = csr;
+        tc.calculateStoryStats();
+        tc.calculateUserStats();
+        return tc;
     }
 
     /**
-     * Calculates the statistics of the story, such as the IDs of the most and least popular stories.
-     * Sets the instance variables for most and least popular stories.
+     * Adds a Twitter user from one row of data to the graph and the user table. A user that is
+     * already in the table has their counts replaced.
+     * 
+     * @param String screen name
+     * @param String user ID
+     * @param int number of tweets
+     * @param int number of stories
+     * @return int ID of the user in the bipartite graph
      */
-    public void calculateStoryStats() {
-        int maxStorySize = 0;
-        int currentSize;
-        int minStorySize = Integer.MAX_VALUE;
+    private int addUser(String screenName, String id, int tweetCount, int storyCount) {
+        this.version++;
+        int user = this.bipartite.addUser(screenName);  // add each screen name as a user vertex
+        if (user == this.userNodes.size()) {
+            this.userNodes.add(this.components.addVertex());
+        }
 
-        for(String storyId: this.storyTable.keySet()) {  // iterate through keys in story hashtable
-            currentSize = (this.graph.getSuccessors(storyId)).size(); 
+        totalTweets += tweetCount - this.userTable.getTweetCount(user);  // accumulate total # of tweets
+        this.userTable.set(user, id, tweetCount, storyCount);  // add user to user table
+        totalUsers = this.bipartite.getNumUsers();
+        if (this.liveGraph != null) {
+            this.liveGraph.addVertex(screenName);
+        }
+        this.userTweetCounts.update(user, tweetCount);
+        this.userStoryCounts.update(user, this.bipartite.getUserDegree(user));
+        return user;
+    }
 
-            if (currentSize > maxStorySize) {
-                this.mostPopStory = storyId;
-                maxStorySize = currentSize;
-            }
+    /**
+     * Adds a story shared by the given user to the graph, unless the user already shared it.
+     * 
+     * @param int ID of the user in the bipartite graph
+     * @param String ID of the story
+     */
+    private void addStory(int user, String storyId) {
+        int known = this.storyNodes.size();
+        int story = this.addStoryVertex(storyId);
+        if (story < known && this.bipartite.hasShare(user, story)) {
+            return;
+        }
+        this.addShare(user, story);
+    }
 
-            if (currentSize < minStorySize) {
-                this.minStorySize = storyId;
-                minStorySize = currentSize;
+    /**
+     * Adds the story as a vertex, if it is not in the graph yet.
+     * 
+     * @param String ID of the story
+     * @return int ID of the story in the bipartite graph
+     */
+    private int addStoryVertex(String storyId) {
+        int story = this.bipartite.addStory(storyId);  // add each new story as a story vertex
+        if (story == this.storyNodes.size()) {
+            this.storyNodes.add(this.components.addVertex());
+            totalStories++;
+            this.version++;
+            if (this.liveGraph != null) {
+                this.liveGraph.addVertex(storyId);
             }
         }
+        return story;
     }
 
     /**
-     * Calculates the most and least active users in terms of stories and tweets.
+     * Creates an edge between a story and a user that shared it, and updates the components and leaderboards.
+     * 
+     * @param int ID of the user in the bipartite graph
+     * @param int ID of the story in the bipartite graph
      */
-    public void calculateUserStats() {
-        int maxStories = 0;
-        int currentSize;
-        int maxTweets = 0;
-        int currentTweets;
-        int minTweets = Integer.MAX_VALUE;
-
-        for(String screenName: this.userTable.keySet()) {
-            currentSize = (this.graph.getSuccessors(screenName)).size();
-            currentTweets = this.userTable.get(screenName).getTweetCount();
-
-            if (currentSize > mostStoriesSoFar) {
-                this.mostActiveWriter = maxStories;
-                maxStories = currentTweets;
-            }
+    private void addShare(int user, int story) {
+        this.version++;
+        this.bipartite.addShare(user, story);
+        this.storyPopularity.increment(story, 1);
+        this.userStoryCounts.increment(user, 1);
+        this.components.union(this.userNodes.get(user), this.storyNodes.get(story));
+        if (this.liveGraph != null) {
+            this.liveGraph.addEdge(this.bipartite.getUser(user), this.bipartite.getStory(story));
+        }
+    }
 
-            if (currentTweets > maxTweeets) {
-                mostActiveTweeter = screenName;
-                maxStories = currentTweets;
-            }
+    /**
+     * RowBuilder passes the rows of the data file to addUser() and addStory().
+     */
+    private class RowBuilder implements MappedTSVReader.RowHandler {
+
+        // instance variables
+        private int user;
+
+        public void user(String screenName, String id, int tweetCount, int storyCount) {
+            this.user = addUser(screenName, id, tweetCount, storyCount);
+        }
+
+        public void story(String storyId) {
+            addStory(this.user, storyId);
+        }
+    }
+
+    /**
+     * Calculates the statistics of the story, such as the IDs of the most and least popular stories.
+     * Sets the instance variables for most and least popular stories. The leaderboards are kept up
+     * to date during ingest, so this only reads their ends.
+     */
+    public void calculateStoryStats() {
+        int[] most = this.storyPopularity.top(1);
+        int[] least = this.storyPopularity.bottom(1);
+        if (most.length > 0) {
+            this.mostPopStory = this.bipartite.getStory(most[0]);
+            this.leastPopStory = this.bipartite.getStory(least[0]);
+        }
+    }
+
+    /**
+     * Calculates the most active users in terms of stories and tweets.
+     */
+    public void calculateUserStats() {
+        int[] writer = this.userStoryCounts.top(1);
+        int[] tweeter = this.userTweetCounts.top(1);
+        if (writer.length > 0) {
+            this.mostActiveWriter = this.bipartite.getUser(writer[0]);
+            this.mostActiveTweeter = this.bipartite.getUser(tweeter[0]);
         }
     }
 
@@ -263,72 +780,78 @@ public class TweeterCollection {
      * @return int size of the LCC
      */
     public int findLCCSize() {
-        Vector<String> vertices = this.graph.getAllVertices();
-        int maxSize = 0;
-        int currentSize;
-        LinkedList<String> dfsList = new LinkedList<String>(); 
-
-        for (int i = 0; i < vertices.size(); i++) {
-            dfsList = this.graph.depthFirstSearch((vertices.elementAt(i)));
-            currentSize = dfsList.size();
-
-            if (currentSize > maxSize) {
-                maxSize = currentSize;
-            }
-        }
-        return maxSize;
+        return this.components.getLargestSize();
     }
 
     /**
-     * Implements a breadth first search on every node and finds the shortest connected component.
+     * Finds the size of the smallest connected component.
      * 
      * @return size of shortest connected component
      */
     public int findShortestConnectedComponentSize() {
-        Vector<String> vertices = this.graph.getAllVertices();
-        int minDist = Integer.MAX_VALUE;
-        int currentDist;
-
-        for (int i = 0; i < vertices.size(); i++) {
-            LinkedList<String> bfsList = this.graph.breadthFirstSearch((vertices.elementAt(i)));
-            currentDist = bfsList.size();
-
-            if (currentDist < minDist) {
+        return this.components.getSmallestSize();
+    }
 
-                minDist = currentDist;
-            }
+    /**
+     * Getter method for obtaining the exact closeness centrality of the graph. The searches run the first
+     * time a score is asked for and are shared by every query afterwards.
+     * 
+     * @return ClosenessCentrality of the graph snapshot
+     */
+    public ClosenessCentrality getCentrality() {
+        if (this.centrality == null) {
+            this.centrality = new ClosenessCentrality(this.getSnapshot());
         }
-        return shortestDistSoFar;
+        return this.centrality;
     }
 
     /**
-     * Finds the most central node by going through all the nodes using DFS starting from any node,
-     * and finding the smallest sum. 
+     * Finds the most central node, the one with the highest closeness. The result is cached until the next change.
      * 
      * @return String element stored in the first central node
      */
     public String findMostCentralNode() {
-        int total = 0;
-        int leastSizeSoFar = Integer.MAX_VALUE;
-        String mostCentralSoFar = "";
-        LinkedList<String> allCentralNodes = new LinkedList<String>();
-        LinkedList<String> allCentralNodesFinal = new LinkedList<String>();
-
-        //initial to for loops to get some of the potential central nodes
-        for (String first : this.graph.getAllVertices()){
-            total = 0;
-            
-            for(String second: this.graph.getAllVertices()) {
-                total += this.graph.depthFirstSearchWithTwo(first,second).size();
-            }
+        return this.analyses.get("mostCentralNode", this.version, () -> {
+            List<ClosenessCentrality.Score> top = this.getCentrality().topK(1);
+            return top.isEmpty() ? "" : (String) top.get(0).getVertex();
+        });
+    }
 
-            if (total < leastSizeSoFar){
-                leastSizeSoFar=total;
-                allCentralNodes.add(first);
-                mostCentralSoFar = first;
-            }
-        }
-        return mostCentralSoFar;
+    /**
+     * Estimates the k most central nodes with HyperLogLog counters instead of exact searches. Each score
+     * carries the relative standard error of its ball sizes, about 1.04 / sqrt(2^log2m).
+     * 
+     * @param int number of nodes wanted
+     * @param int base 2 logarithm of the registers per counter, from 4 (fast, +/- 26%) to 16 (slow, +/- 0.4%)
+     * @return List of Scores from most to least central
+     */
+    public List<ClosenessCentrality.Score> findMostCentralNodesApprox(int k, int log2m) {
+        return this.analyses.get("mostCentralNodesApprox", this.version,
+            () -> Collections.unmodifiableList(new HyperANF(this.getSnapshot(), log2m).topK(k, v -> true)), k, log2m);
+    }
+
+    /**
+     * Finds the k most central users with their average hop distance to the rest of their component.
+     * 
+     * @param int number of users wanted
+     * @return List of Scores from most to least central
+     */
+    public List<ClosenessCentrality.Score> findMostCentralUsers(int k) {
+        int numUsers = this.bipartite.getNumUsers();
+        return this.analyses.get("mostCentralUsers", this.version,
+            () -> Collections.unmodifiableList(this.getCentrality().topK(k, v -> v < numUsers)), k);
+    }
+
+    /**
+     * Finds the k most central stories with their average hop distance to the rest of their component.
+     * 
+     * @param int number of stories wanted
+     * @return List of Scores from most to least central
+     */
+    public List<ClosenessCentrality.Score> findMostCentralStories(int k) {
+        int numUsers = this.bipartite.getNumUsers();
+        return this.analyses.get("mostCentralStories", this.version,
+            () -> Collections.unmodifiableList(this.getCentrality().topK(k, v -> v >= numUsers)), k);
     }
 
     /**
@@ -337,31 +860,55 @@ public class TweeterCollection {
     public static void main(String[] args) {
         System.out.println("***Test Russian Accounts CSV***\n");
         TweeterCollection tc = new TweeterCollection("All_Russian-Accounts-in-TT-stories.csv.tsv");
-        System.out.println(tc.graph.toString());
+        System.out.println(tc.getGraph().toString());
         
-        tc.graph.saveToTGF("ratsTEST.tgf");
+        tc.getGraph().saveToTGF("ratsTEST.tgf");
         tc.calculateStoryStats();
         tc.calculateUserStats();
         
         System.out.println("Basic Graph Data:");
-        System.out.println("Total vertices: " + tc.graph.getNumVertices());
+        System.out.println("Total vertices: " + tc.getGraph().getNumVertices());
         System.out.println("Total tweets: " + tc.totalTweets);
         System.out.println("Total stories: " + tc.totalStories);
         System.out.println("Total users: " + tc.totalUsers);
         System.out.println("Most active story user: "+ tc.getMostActiveWriter());
         System.out.println("Most active Tweeter user: "+ tc.getMostActiveTweeter());
+        System.out.println("Top 5 stories: " + tc.getTopStories(5));
+        System.out.println("Top 5 story users: " + tc.getTopWriters(5));
+        System.out.println("Top 5 Tweeter users: " + tc.getTopTweeters(5));
+
+        System.out.println("\nStreaming append:");
+        TweeterCollection stream = new TweeterCollection();
+        stream.appendRows("alice\t1\t10\t2\ts1,s2\nbob\t2\t5\t1\ts2\n");
+        System.out.println("Expected: 2 users, 2 stories, 15 tweets, most popular s2 \nGot: " + stream.getTotalUsers()
+            + " users, " + stream.getTotalStories() + " stories, " + stream.getTotalTweets() + " tweets, most popular "
+            + stream.getMostPopStory());
+        stream.appendRow("alice", "1", 12, 3, Arrays.asList("s2", "s3"));
+        stream.appendRow("carol", "3", 1, 1, Arrays.asList("s4"));
+        System.out.println("Expected: 3 users, 4 stories, 18 tweets, 2 components, LCC 5 \nGot: " + stream.getTotalUsers()
+            + " users, " + stream.getTotalStories() + " stories, " + stream.getTotalTweets() + " tweets, "
+            + stream.getComponents().getNumComponents() + " components, LCC " + stream.findLCCSize());
+        String central = stream.findMostCentralNode();
+        System.out.println("Expected: alice cached once, 1 hit \nGot: " + central + " "
+            + (stream.findMostCentralNode() == central ? "cached once" : "computed twice") + ", "
+            + stream.getAnalysisCache().getHits() + " hit");
+        stream.appendRow("erin", "5", 1, 2, Arrays.asList("s4", "s3"));
+        stream.findMostCentralNode();
+        System.out.println("Expected: computed again after an append, 2 misses \nGot: " + stream.getAnalysisCache().getMisses() + " misses");
+        Tweeter alice = stream.getTweeter("alice");
+        System.out.println("Expected: alice 1 12 3, no dave \nGot: " + alice.getScreen() + " " + alice.getId() + " "
+            + alice.getTweetCount() + " " + alice.getStoryCount() + ", " + (stream.getTweeter("dave") == null ? "no dave" : "dave"));
 
         System.out.println("\nGraph Data from DFS and BFS:");
         System.out.println("Largest component size: " + tc.findLCCSize());
         System.out.println(tc.findMostCentralNode());
-        System.out.println("Shortest distance: " + TCPConnection.findShortestDist());
 
         System.out.println("\nStory Trends to Analyze:");
         String mostPopStoryId = tc.getMostPopStory();
         String leastPopStoryId = tc.getLeastPopStory();
         System.out.println("ID of the most popular story: " + mostPopStoryId);
         System.out.println("Title of the most popular story: " + tc.getStoryTitle(mostPopStoryId));
-        System.out.println("ID of least popular story: " + tc.PopStoryId);
+        System.out.println("ID of least popular story: " + leastPopStoryId);
         System.out.println("Title of the least popular story: " + tc.getStoryTitle(tc.getLeastPopStory()));
     }
 }
\ No newline at end of file
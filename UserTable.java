@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * UserTable holds the attributes of the Twitter users from the data file in columns, one int array per
+ * attribute indexed by the user's ID in the BipartiteGraph. Twitter user IDs are interned in a
+ * StringDictionary and the column keeps their codes. A row costs 12 bytes plus its ID in the dictionary,
+ * where a Tweeter object with its Strings and Hashtable entry cost well over 100. Tweeter objects are
+ * still made on demand by TweeterCollection.getTweeter().
+ *
+ * UserTable.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+public class UserTable {
+
+    // instance variables
+    private StringDictionary twitterIds;
+    private int[] idCodes;  // code of each user's Twitter ID in twitterIds, -1 if the user has no row yet
+    private int[] tweetCounts;
+    private int[] storyCounts;
+    private int size;
+
+    /**
+     * Constructor creates an empty UserTable object and initializes instance variables.
+     */
+    public UserTable() {
+        this.twitterIds = new StringDictionary();
+        this.idCodes = new int[16];
+        Arrays.fill(this.idCodes, -1);
+        this.tweetCounts = new int[16];
+        this.storyCounts = new int[16];
+        this.size = 0;
+    }
+
+    /**
+     * Getter method for obtaining the number of rows, one more than the highest user ID set.
+     *
+     * @return int number of rows
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns a boolean indicating whether the given user has a row in this table.
+     *
+     * @param int ID of the user in the bipartite graph
+     * @return boolean true if set() was called for the user, false otherwise
+     */
+    public boolean contains(int user) {
+        return user >= 0 && user < this.size && this.idCodes[user] >= 0;
+    }
+
+    /**
+     * Sets the row of the given user, replacing the previous one if there is one.
+     *
+     * @param int ID of the user in the bipartite graph
+     * @param String Twitter user ID
+     * @param int number of tweets
+     * @param int number of stories
+     */
+    public void set(int user, String id, int tweetCount, int storyCount) {
+        if (user >= this.idCodes.length) {
+            int capacity = Math.max(this.idCodes.length * 2, user + 1);
+            int old = this.idCodes.length;
+            this.idCodes = Arrays.copyOf(this.idCodes, capacity);
+            Arrays.fill(this.idCodes, old, capacity, -1);
+            this.tweetCounts = Arrays.copyOf(this.tweetCounts, capacity);
+            this.storyCounts = Arrays.copyOf(this.storyCounts, capacity);
+        }
+        this.idCodes[user] = this.twitterIds.add(id);
+        this.tweetCounts[user] = tweetCount;
+        this.storyCounts[user] = storyCount;
+        this.size = Math.max(this.size, user + 1);
+    }
+
+    /**
+     * Getter method for obtaining the Twitter ID of a user.
+     *
+     * @param int ID of the user in the bipartite graph
+     * @return String Twitter user ID, or null if the user has no row
+     */
+    public String getTwitterId(int user) {
+        return this.contains(user) ? this.twitterIds.get(this.idCodes[user]) : null;
+    }
+
+    /**
+     * Getter method for obtaining the number of tweets of a user.
+     *
+     * @param int ID of the user in the bipartite graph
+     * @return int number of tweets, or 0 if the user has no row
+     */
+    public int getTweetCount(int user) {
+        return this.contains(user) ? this.tweetCounts[user] : 0;
+    }
+
+    /**
+     * Getter method for obtaining the number of stories of a user, as given in the data file.
+     *
+     * @param int ID of the user in the bipartite graph
+     * @return int number of stories, or 0 if the user has no row
+     */
+    public int getStoryCount(int user) {
+        return this.contains(user) ? this.storyCounts[user] : 0;
+    }
+
+    /**
+     * Returns a copy of the tweet count column.
+     *
+     * @return int[] number of tweets of each user, by user ID
+     */
+    public int[] getTweetCounts() {
+        return Arrays.copyOf(this.tweetCounts, this.size);
+    }
+
+    /**
+     * Returns a copy of the story count column.
+     *
+     * @return int[] number of stories of each user, by user ID
+     */
+    public int[] getStoryCounts() {
+        return Arrays.copyOf(this.storyCounts, this.size);
+    }
+}
@@ -0,0 +1,126 @@
+package twitter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CollectionBenchmark measures TweeterCollection on generated account/story files of several sizes. Story
+ * popularity is skewed, so a few stories are shared by many users as in the real data. Each benchmark
+ * reports throughput and sampled latency; run with "-prof gc" for the allocation rate.
+ *
+ * CollectionBenchmark.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int users;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    // instance variables
+    private File dataFile;
+    private TweeterCollection collection;
+
+    /**
+     * Writes the data file and reads it once for the benchmarks that query a built collection.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.dataFile = File.createTempFile("benchmark", ".tsv");
+        Random random = new Random(42);
+        int stories = Math.max(this.users / 10, 1);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(this.dataFile))) {
+            for (int u = 0; u < this.users; u++) {
+                int count = 1 + random.nextInt(5);
+                writer.write("u" + u + "\t" + u + "\t" + random.nextInt(1000) + "\t" + count + "\t");
+                for (int i = 0; i < count; i++) {
+                    double r = random.nextDouble();
+                    writer.write((i > 0 ? "," : "") + "s" + (int) (stories * r * r * r));
+                }
+                writer.write("\n");
+            }
+        }
+        this.collection = new TweeterCollection(this.dataFile.getPath(), this.threads);
+    }
+
+    /**
+     * Deletes the data file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.dataFile.delete();
+    }
+
+    @Benchmark
+    public TweeterCollection readTwitterData() {
+        return new TweeterCollection(this.dataFile.getPath(), this.threads);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int findLCCSize() {
+        return this.collection.findLCCSize();
+    }
+
+    @Benchmark
+    public int findLCCSizeFromScratch() {
+        return ConnectedComponents.of(this.collection.getSnapshot()).getLargestSize();
+    }
+
+    @Benchmark
+    public String findMostCentralNode(CentralityState state) {
+        return state.collection.findMostCentralNode();
+    }
+
+    /**
+     * CentralityState holds a collection whose cached centrality is dropped before every call, so every
+     * call of findMostCentralNode() runs the searches again. The snapshot is frozen outside the measurement.
+     */
+    @State(Scope.Benchmark)
+    public static class CentralityState {
+
+        // instance variables
+        private TweeterCollection collection;
+
+        @Setup(Level.Trial)
+        public void setUp(CollectionBenchmark benchmark) {
+            this.collection = benchmark.collection;
+        }
+
+        @Setup(Level.Invocation)
+        public void dropCentrality() {
+            this.collection.appendRows("");
+            this.collection.getAnalysisCache().clear();  // an empty append leaves the version, and so the cached result, unchanged
+            this.collection.getSnapshot();
+        }
+    }
+}
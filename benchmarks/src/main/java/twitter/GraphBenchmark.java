@@ -0,0 +1,129 @@
+package twitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GraphBenchmark measures the AdjListsGraph operations on random graphs of several sizes. Each benchmark
+ * reports throughput and sampled latency; run with "-prof gc" for the allocation rate.
+ *
+ * GraphBenchmark.java
+ * @author Alexandra Bullen-Smith
+ * @author Peyton Wang
+ * @version 12/9/19
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int vertices;
+
+    @Param({"4"})
+    public int averageDegree;
+
+    // instance variables
+    private AdjListsGraph<Integer> graph;
+    private AdjListsGraph<Integer> indexedGraph;
+    private int[][] edges;
+    private Random random;
+    private File tgfFile;
+
+    /**
+     * Builds the random edge list and the graphs the read-only benchmarks run on.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        Random edgeRandom = new Random(42);
+        this.edges = new int[this.vertices * this.averageDegree / 2][];
+        for (int i = 0; i < this.edges.length; i++) {
+            this.edges[i] = new int[] {edgeRandom.nextInt(this.vertices), edgeRandom.nextInt(this.vertices)};
+        }
+        this.graph = this.build(new AdjListsGraph<Integer>());
+        this.indexedGraph = this.build(new AdjListsGraph<Integer>(true));
+        this.random = new Random(7);
+        this.tgfFile = File.createTempFile("benchmark", ".tgf");
+    }
+
+    /**
+     * Deletes the TGF file written by saveToTGF().
+     */
+    @TearDown
+    public void tearDown() {
+        this.tgfFile.delete();
+    }
+
+    /**
+     * Adds every vertex and edge of the random edge list to the given graph.
+     */
+    private AdjListsGraph<Integer> build(AdjListsGraph<Integer> g) {
+        for (int v = 0; v < this.vertices; v++) {
+            g.addVertex(v);
+        }
+        for (int[] edge : this.edges) {
+            g.addEdge(edge[0], edge[1]);
+        }
+        return g;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public AdjListsGraph<Integer> addVertexAndEdge() {
+        return this.build(new AdjListsGraph<Integer>());
+    }
+
+    @Benchmark
+    public LinkedList<Integer> getSuccessors() {
+        return this.graph.getSuccessors(this.random.nextInt(this.vertices));
+    }
+
+    @Benchmark
+    public LinkedList<Integer> getPredecessors() {
+        return this.graph.getPredecessors(this.random.nextInt(this.vertices));
+    }
+
+    @Benchmark
+    public LinkedList<Integer> getPredecessorsIndexed() {
+        return this.indexedGraph.getPredecessors(this.random.nextInt(this.vertices));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LinkedList<Integer> depthFirstSearch() {
+        return this.graph.depthFirstSearch(this.random.nextInt(this.vertices));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LinkedList<Integer> breadthFirstSearch() {
+        return this.graph.breadthFirstSearch(this.random.nextInt(this.vertices));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long saveToTGF() {
+        this.graph.saveToTGF(this.tgfFile.getPath());
+        return this.tgfFile.length();
+    }
+}